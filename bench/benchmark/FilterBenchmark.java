@@ -0,0 +1,602 @@
+package benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import filters.ArithmeticFilter;
+import filters.BaseFilter;
+import filters.BitwiseFilter;
+import filters.BlendingFilter;
+import filters.ChannelFilter;
+import filters.ConvolutionFilter;
+import filters.FilterExecutor;
+import filters.GeometricFilter;
+import filters.GeometricPipeline;
+import filters.GrayscaleFilter;
+import filters.MedianFilter;
+import filters.PointPipeline;
+import filters.SearchFilter;
+
+// Benchmarks every public method of the filters package.
+//
+// usage: java -cp bin benchmark.FilterBenchmark [options]
+//   --sizes 512,2k,4k,8k           image sizes
+//   --types INT_RGB,INT_ARGB,...   image types (INT_RGB, INT_ARGB, 3BYTE_BGR, BYTE_GRAY)
+//   --filter <regex>               only cases whose name matches, e.g. "Median.*"
+//   --warmup <n>                   warmup iterations (default 2)
+//   --iterations <n>               measured iterations (default 5)
+//   --json <file>                  also write the results as JSON
+public class FilterBenchmark {
+
+	public interface Operation {
+		Object apply(BufferedImage image);
+	}
+
+	private static final String[] SIZE_NAMES = { "512", "2k", "4k", "8k" };
+	private static final int[][] SIZES = { { 512, 512 }, { 2048, 1080 }, { 3840, 2160 }, { 7680, 4320 } };
+
+	private static final String[] TYPE_NAMES = { "INT_RGB", "INT_ARGB", "3BYTE_BGR", "BYTE_GRAY" };
+	private static final int[] TYPES = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY };
+
+	private static final Class<?>[] FILTERS = { ArithmeticFilter.class, BitwiseFilter.class, BlendingFilter.class,
+			ChannelFilter.class, ConvolutionFilter.class, GeometricFilter.class, GrayscaleFilter.class,
+			MedianFilter.class, SearchFilter.class };
+
+	private final List<Case> cases = new ArrayList<>();
+
+	private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	public FilterBenchmark() {
+		register();
+	}
+
+	// one entry per public method and parameter set; the signature is checked against the filter classes
+	private void register() {
+		add("ArithmeticFilter.add(int)", "k=37", image -> new ArithmeticFilter(image).add(37));
+		add("ArithmeticFilter.sub(int)", "k=37", image -> new ArithmeticFilter(image).sub(37));
+		add("ArithmeticFilter.mul(double)", "k=1.3", image -> new ArithmeticFilter(image).mul(1.3));
+		add("ArithmeticFilter.div(double)", "k=2.7", image -> new ArithmeticFilter(image).div(2.7));
+		add("ArithmeticFilter.add(BufferedImage)", "", image -> new ArithmeticFilter(image).add(image));
+		add("ArithmeticFilter.sub(BufferedImage)", "", image -> new ArithmeticFilter(image).sub(image));
+		add("ArithmeticFilter.mul(BufferedImage)", "", image -> new ArithmeticFilter(image).mul(image));
+		add("ArithmeticFilter.div(BufferedImage)", "", image -> new ArithmeticFilter(image).div(image));
+
+		add("BitwiseFilter.and(int)", "k=90", image -> new BitwiseFilter(image).and(90));
+		add("BitwiseFilter.or(int)", "k=90", image -> new BitwiseFilter(image).or(90));
+		add("BitwiseFilter.xor(int)", "k=90", image -> new BitwiseFilter(image).xor(90));
+		add("BitwiseFilter.not()", "", image -> new BitwiseFilter(image).not());
+		add("BitwiseFilter.and(BufferedImage)", "", image -> new BitwiseFilter(image).and(image));
+		add("BitwiseFilter.or(BufferedImage)", "", image -> new BitwiseFilter(image).or(image));
+		add("BitwiseFilter.xor(BufferedImage)", "", image -> new BitwiseFilter(image).xor(image));
+
+		add("BlendingFilter.blend(BufferedImage,double)", "level=30",
+				image -> new BlendingFilter(image).blend(image, 30));
+
+		add("ChannelFilter.red()", "", image -> new ChannelFilter(image).red());
+		add("ChannelFilter.green()", "", image -> new ChannelFilter(image).green());
+		add("ChannelFilter.blue()", "", image -> new ChannelFilter(image).blue());
+
+		for (final int size : new int[] { 3, 5, 9, 15 }) {
+			final int[][] box = kernel(size, false);
+			final int[][] random = kernel(size, true);
+			add("ConvolutionFilter.convolution(int[][],float)", "kernel=box" + size,
+					image -> new ConvolutionFilter(image).convolution(box, size * size));
+			add("ConvolutionFilter.convolution(int[][],float)", "kernel=random" + size,
+					image -> new ConvolutionFilter(image).convolution(random, size * size));
+		}
+		for (final int method : new int[] { ConvolutionFilter.DIRECT, ConvolutionFilter.FFT }) {
+			final int[][] random = kernel(15, true);
+			add("ConvolutionFilter.convolution(int[][],float)",
+					"kernel=random15 method=" + (method == ConvolutionFilter.FFT ? "FFT" : "DIRECT"), image -> {
+						final ConvolutionFilter filter = new ConvolutionFilter(image);
+						filter.setMethod(method);
+						return filter.convolution(random, 225);
+					});
+		}
+		final int[][] gaussian = gaussian(15);
+		final int weight = sum(gaussian);
+		add("ConvolutionFilter.convolution(int[][],float)", "kernel=gaussian15",
+				image -> new ConvolutionFilter(image).convolution(gaussian, weight));
+		add("ConvolutionFilter.convolution(int[][],float)", "kernel=gaussian15 tolerance=0.01", image -> {
+			final ConvolutionFilter filter = new ConvolutionFilter(image);
+			filter.setTolerance(0.01);
+			return filter.convolution(gaussian, weight);
+		});
+		add("ConvolutionFilter.roberts()", "", image -> new ConvolutionFilter(image).roberts());
+		add("ConvolutionFilter.sobel()", "", image -> new ConvolutionFilter(image).sobel());
+
+		add("GeometricFilter.translate(int,int)", "x=13,y=-7", image -> new GeometricFilter(image).translate(13, -7));
+		for (final int degrees : new int[] { 15, 45, 90 }) {
+			add("GeometricFilter.rotate(double)", "angle=" + degrees,
+					image -> new GeometricFilter(image).rotate(Math.toRadians(degrees)));
+		}
+		for (final int interpolation : new int[] { GeometricFilter.BILINEAR, GeometricFilter.BICUBIC }) {
+			add("GeometricFilter.rotate(double)",
+					"angle=15 " + (interpolation == GeometricFilter.BILINEAR ? "BILINEAR" : "BICUBIC") + " expand", image -> {
+						final GeometricFilter filter = new GeometricFilter(image);
+						filter.setInterpolation(interpolation);
+						filter.setExpand(true);
+						return filter.rotate(Math.toRadians(15));
+					});
+		}
+		add("GeometricFilter.scale(double)", "scale=0.5", image -> new GeometricFilter(image).scale(0.5));
+		add("GeometricFilter.scale(double)", "scale=2", image -> new GeometricFilter(image).scale(2));
+		final String[] resamplings = { "NEAREST", "BILINEAR", "BICUBIC", "BOX", "LANCZOS" };
+		for (final int resampling : new int[] { GeometricFilter.BOX, GeometricFilter.BILINEAR, GeometricFilter.BICUBIC,
+				GeometricFilter.LANCZOS }) {
+			for (final double scale : new double[] { 0.25, 1.5 }) {
+				add("GeometricFilter.scale(double)", "scale=" + scale + " " + resamplings[resampling], image -> {
+					final GeometricFilter filter = new GeometricFilter(image);
+					filter.setResampling(resampling);
+					return filter.scale(scale);
+				});
+			}
+		}
+		add("GeometricFilter.rotate90()", "", image -> new GeometricFilter(image).rotate90());
+		add("GeometricFilter.rotate180()", "", image -> new GeometricFilter(image).rotate180());
+		add("GeometricFilter.rotate270()", "", image -> new GeometricFilter(image).rotate270());
+		add("GeometricFilter.flipHorizontal()", "", image -> new GeometricFilter(image).flipHorizontal());
+		add("GeometricFilter.flipVertical()", "", image -> new GeometricFilter(image).flipVertical());
+
+		add("GrayscaleFilter.average()", "", image -> new GrayscaleFilter(image).average());
+		add("GrayscaleFilter.sdtv()", "", image -> new GrayscaleFilter(image).sdtv());
+		add("GrayscaleFilter.hdtv()", "", image -> new GrayscaleFilter(image).hdtv());
+		add("GrayscaleFilter.threshold(int)", "max=100", image -> new GrayscaleFilter(image).threshold(100));
+		add("GrayscaleFilter.threshold(int,int)", "min=50,max=150",
+				image -> new GrayscaleFilter(image).threshold(50, 150));
+		add("GrayscaleFilter.histogram()", "", image -> new GrayscaleFilter(image).histogram());
+		add("GrayscaleFilter.histogram(int,int,int,int)", "w=128,h=128",
+				image -> new GrayscaleFilter(image).histogram(64, 64, 128, 128));
+
+		for (final int k : new int[] { 1, 2, 5 }) {
+			add("MedianFilter.median(int)", "k=" + k, image -> new MedianFilter(image).median(k));
+		}
+
+		// the same chain fused and as separate filters
+		final PointPipeline chain = new PointPipeline().hdtv().add(20).threshold(128).not();
+		add("PointPipeline.apply(BufferedImage)", "hdtv>add>threshold>not", image -> chain.apply(image));
+		add("PointPipeline.apply(BufferedImage)", "separate filters", image -> new BitwiseFilter(
+				new GrayscaleFilter(new ArithmeticFilter(new GrayscaleFilter(image).hdtv()).add(20)).threshold(128))
+						.not());
+
+		// the same geometric chain composed and as separate filters
+		add("GeometricPipeline.apply()", "translate>rotate>scale>flip BILINEAR", image -> {
+			final GeometricPipeline transform = new GeometricPipeline(image);
+			transform.setInterpolation(GeometricFilter.BILINEAR);
+			return transform.translate(13, -7).rotate(Math.toRadians(15)).scale(0.75).flipVertical().apply();
+		});
+		add("GeometricPipeline.apply()", "separate filters BILINEAR", image -> {
+			GeometricFilter filter = new GeometricFilter(new GeometricFilter(image).translate(13, -7));
+			filter.setInterpolation(GeometricFilter.BILINEAR);
+			filter = new GeometricFilter(filter.rotate(Math.toRadians(15)));
+			filter.setResampling(GeometricFilter.BILINEAR);
+			return new GeometricFilter(filter.scale(0.75)).flipVertical();
+		});
+
+		for (final int size : new int[] { 64, 128 }) {
+			add("SearchFilter.findPattern(BufferedImage)", "pattern=" + size, image -> new SearchFilter(image)
+					.findPattern(image.getSubimage(image.getWidth() / 3, image.getHeight() / 3, size, size)));
+		}
+
+		for (final int size : new int[] { 64, 128 }) {
+			add("SearchFilter.findPattern(BufferedImage)", "pattern=" + size + " levels=3 candidates=8", image -> {
+				final SearchFilter filter = new SearchFilter(image);
+				filter.setLevels(3);
+				filter.setCandidates(8);
+				return filter.findPattern(image.getSubimage(image.getWidth() / 3, image.getHeight() / 3, size, size));
+			});
+		}
+
+		for (final int size : new int[] { 64, 128 }) {
+			add("SearchFilter.findPattern(BufferedImage)", "pattern=" + size + " method=CORRELATION", image -> {
+				final SearchFilter filter = new SearchFilter(image);
+				filter.setMethod(SearchFilter.CORRELATION);
+				return filter.findPattern(image.getSubimage(image.getWidth() / 3, image.getHeight() / 3, size, size));
+			});
+		}
+
+		add("SearchFilter.findPatterns(BufferedImage,int)", "pattern=64 count=8", image -> new SearchFilter(image)
+				.findPatterns(image.getSubimage(image.getWidth() / 3, image.getHeight() / 3, 64, 64), 8));
+		add("SearchFilter.drawRegions(List)", "regions=8", image -> {
+			final SearchFilter filter = new SearchFilter(image);
+			final List<SearchFilter.Region> regions = new ArrayList<>();
+			for (int n = 0; n < 8; n++) {
+				regions.add(new SearchFilter.Region(n * image.getWidth() / 8, n * image.getHeight() / 8, 64, 64, 1));
+			}
+			return filter.drawRegions(regions);
+		});
+	}
+
+	private void add(String method, String params, Operation operation) {
+		cases.add(new Case(method, params, operation));
+	}
+
+	// names of the cases, as printed in the results
+	public List<String> getNames() {
+		final List<String> names = new ArrayList<>();
+		for (Case c : cases) {
+			names.add(c.getName());
+		}
+
+		return names;
+	}
+
+	public Operation getOperation(String name) {
+		for (Case c : cases) {
+			if (c.getName().equals(name)) {
+				return c.operation;
+			}
+		}
+
+		throw new IllegalArgumentException("unknown benchmark: " + name);
+	}
+
+	// public filter methods that have no benchmark case
+	public Set<String> uncovered() {
+		final Set<String> methods = new LinkedHashSet<>();
+		for (Class<?> filter : FILTERS) {
+			for (Method method : filter.getDeclaredMethods()) {
+				if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+					continue;
+				}
+				// filter settings, not operations
+				if (method.getName().startsWith("get") || method.getName().startsWith("set")
+						|| method.getName().startsWith("is")) {
+					continue;
+				}
+				methods.add(signature(filter, method));
+			}
+		}
+
+		for (Case c : cases) {
+			methods.remove(c.method);
+		}
+
+		return methods;
+	}
+
+	private static String signature(Class<?> filter, Method method) {
+		final StringBuilder sb = new StringBuilder(filter.getSimpleName()).append('.').append(method.getName())
+				.append('(');
+		final Class<?>[] params = method.getParameterTypes();
+		for (int i = 0; i < params.length; i++) {
+			sb.append(i > 0 ? "," : "").append(params[i].getSimpleName());
+		}
+
+		return sb.append(')').toString();
+	}
+
+	public List<Result> run(String[] sizes, String[] types, Pattern filter, int warmup, int iterations,
+			PrintWriter out) throws IOException {
+		final List<Result> results = new ArrayList<>();
+
+		for (String size : sizes) {
+			for (String type : types) {
+				final BufferedImage image = createImage(size, type);
+
+				for (Case c : cases) {
+					if (!filter.matcher(c.getName()).find()) {
+						continue;
+					}
+
+					final Result result = measure(c, image, size, type, warmup, iterations);
+					results.add(result);
+
+					out.println(result);
+					out.flush();
+				}
+			}
+		}
+
+		return results;
+	}
+
+	private Result measure(Case c, BufferedImage image, String size, String type, int warmup, int iterations) {
+		for (int i = 0; i < warmup; i++) {
+			c.operation.apply(image);
+		}
+
+		final long gcCount = gcCount();
+		final long gcTime = gcTime();
+		final long allocated = allocatedBytes();
+
+		final long[] times = new long[iterations];
+		for (int i = 0; i < iterations; i++) {
+			final long start = System.nanoTime();
+			c.operation.apply(image);
+			times[i] = System.nanoTime() - start;
+		}
+
+		final Result result = new Result(c, size, type, image.getWidth(), image.getHeight());
+		result.allocated = (allocatedBytes() - allocated) / iterations;
+		result.gcCount = gcCount() - gcCount;
+		result.gcTime = gcTime() - gcTime;
+		result.times = times;
+
+		return result;
+	}
+
+	// bytes allocated so far by every live thread, including the filter worker threads
+	private long allocatedBytes() {
+		long sum = 0;
+		for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (bytes > 0) {
+				sum += bytes;
+			}
+		}
+
+		return sum;
+	}
+
+	private static long gcCount() {
+		long sum = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			sum += Math.max(0, gc.getCollectionCount());
+		}
+
+		return sum;
+	}
+
+	private static long gcTime() {
+		long sum = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			sum += Math.max(0, gc.getCollectionTime());
+		}
+
+		return sum;
+	}
+
+	// test image of one of the sizes and types of the options
+	public static BufferedImage createImage(String size, String type) throws IOException {
+		final int[] dimension = SIZES[indexOf(SIZE_NAMES, size)];
+
+		return createImage(dimension[0], dimension[1], TYPES[indexOf(TYPE_NAMES, type)]);
+	}
+
+	// deterministic test image: Lenna tiled over a gradient, with some noise
+	private static BufferedImage createImage(int width, int height, int type) throws IOException {
+		final int[] data = new int[width * height];
+		final Random random = new Random(width * 31 + height);
+
+		for (int j = 0, p = 0; j < height; j++) {
+			for (int i = 0; i < width; i++, p++) {
+				final int r = (i * 255 / width + random.nextInt(16)) & 0xFF;
+				final int g = (j * 255 / height + random.nextInt(16)) & 0xFF;
+				final int b = ((i + j) & 0xFF) ^ random.nextInt(8);
+				data[p] = BaseFilter.colorRGB(r, g, b);
+			}
+		}
+
+		final BufferedImage image = BaseFilter.createImage(data, width, height, type);
+
+		final File lenna = new File("data/Lenna.png");
+		if (lenna.exists()) {
+			final BufferedImage tile = ImageIO.read(lenna);
+			final Graphics2D graphics = image.createGraphics();
+			for (int y = 0; y < height; y += tile.getHeight() * 2) {
+				for (int x = (y / tile.getHeight() / 2 % 2) * tile.getWidth(); x < width; x += tile.getWidth() * 2) {
+					graphics.drawImage(tile, x, y, null);
+				}
+			}
+			graphics.dispose();
+		}
+
+		return image;
+	}
+
+	private static int[][] kernel(int size, boolean random) {
+		final Random r = new Random(size);
+		final int[][] kernel = new int[size][size];
+		for (int[] row : kernel) {
+			for (int i = 0; i < size; i++) {
+				row[i] = random ? r.nextInt(9) - 2 : 1;
+			}
+		}
+
+		return kernel;
+	}
+
+	private static int sum(int[][] kernel) {
+		int sum = 0;
+		for (int[] row : kernel) {
+			for (int v : row) {
+				sum += v;
+			}
+		}
+
+		return sum;
+	}
+
+	// binomial weights rounded to integers, close to but not exactly an outer product
+	private static int[][] gaussian(int size) {
+		final long[] binomial = new long[size];
+		binomial[0] = 1;
+		for (int i = 1; i < size; i++) {
+			binomial[i] = binomial[i - 1] * (size - i) / i;
+		}
+
+		final int[][] kernel = new int[size][size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				kernel[y][x] = (int) (binomial[y] * binomial[x] / binomial[size / 2]);
+			}
+		}
+
+		return kernel;
+	}
+
+	private static int indexOf(String[] values, String value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].equalsIgnoreCase(value)) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException("unknown value: " + value);
+	}
+
+	public static void writeJson(List<Result> results, File file) throws IOException {
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			out.println("[");
+			for (int i = 0; i < results.size(); i++) {
+				out.print(results.get(i).toJson());
+				out.println(i < results.size() - 1 ? "," : "");
+			}
+			out.println("]");
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String[] sizes = { "512" };
+		String[] types = { "INT_RGB" };
+		Pattern filter = Pattern.compile("");
+		int warmup = 2, iterations = 5;
+		File json = null;
+
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--sizes":
+				sizes = args[++i].split(",");
+				break;
+			case "--types":
+				types = args[++i].split(",");
+				break;
+			case "--filter":
+				filter = Pattern.compile(args[++i]);
+				break;
+			case "--warmup":
+				warmup = Integer.parseInt(args[++i]);
+				break;
+			case "--iterations":
+				iterations = Math.max(1, Integer.parseInt(args[++i]));
+				break;
+			case "--json":
+				json = new File(args[++i]);
+				break;
+			default:
+				System.err.println("unknown option: " + args[i]);
+				System.exit(1);
+			}
+		}
+
+		final FilterBenchmark benchmark = new FilterBenchmark();
+		for (String method : benchmark.uncovered()) {
+			System.err.println("warning: no benchmark for " + method);
+		}
+
+		final PrintWriter out = new PrintWriter(System.out);
+		out.println(String.format(Locale.ROOT, "%-80s %-10s %-6s %12s %10s %12s %6s", "benchmark", "type", "size",
+				"ops/s", "ns/pixel", "bytes/op", "gc"));
+
+		final List<Result> results = benchmark.run(sizes, types, filter, warmup, iterations, out);
+		if (json != null) {
+			writeJson(results, json);
+		}
+	}
+
+	private static class Case {
+		private final String method, params;
+		private final Operation operation;
+
+		public Case(String method, String params, Operation operation) {
+			this.method = method;
+			this.params = params;
+			this.operation = operation;
+		}
+
+		public String getName() {
+			return params.isEmpty() ? method : method + " [" + params + "]";
+		}
+	}
+
+	public static class Result {
+		private final Case c;
+		private final String size, type;
+		private final int width, height;
+		private long[] times;
+		private long allocated, gcCount, gcTime;
+
+		private Result(Case c, String size, String type, int width, int height) {
+			this.c = c;
+			this.size = size;
+			this.type = type;
+			this.width = width;
+			this.height = height;
+		}
+
+		public double getAverageTime() {
+			double sum = 0;
+			for (long time : times) {
+				sum += time;
+			}
+
+			return sum / times.length;
+		}
+
+		public double getOpsPerSecond() {
+			return 1e9 / getAverageTime();
+		}
+
+		public double getNanosPerPixel() {
+			return getAverageTime() / ((double) width * height);
+		}
+
+		public double getError() {
+			final double average = getAverageTime();
+			double sum = 0;
+			for (long time : times) {
+				sum += (time - average) * (time - average);
+			}
+
+			return times.length > 1 ? Math.sqrt(sum / (times.length - 1)) : 0;
+		}
+
+		public String toJson() {
+			final StringBuilder sb = new StringBuilder();
+			sb.append("  {\"benchmark\": \"").append(c.method).append('"');
+			sb.append(", \"params\": \"").append(c.params).append('"');
+			sb.append(", \"type\": \"").append(type).append('"');
+			sb.append(", \"size\": \"").append(size).append('"');
+			sb.append(", \"width\": ").append(width);
+			sb.append(", \"height\": ").append(height);
+			sb.append(", \"imageImageLoops\": \"").append(FilterExecutor.isVectorized() ? "Vector API" : "scalar")
+					.append('"');
+			sb.append(", \"iterations\": ").append(times.length);
+			sb.append(String.format(Locale.ROOT, ", \"opsPerSecond\": %.4f", getOpsPerSecond()));
+			sb.append(String.format(Locale.ROOT, ", \"nsPerOp\": %.1f", getAverageTime()));
+			sb.append(String.format(Locale.ROOT, ", \"nsPerOpError\": %.1f", getError()));
+			sb.append(String.format(Locale.ROOT, ", \"nsPerPixel\": %.4f", getNanosPerPixel()));
+			sb.append(", \"bytesPerOp\": ").append(allocated);
+			sb.append(String.format(Locale.ROOT, ", \"allocMBPerSecond\": %.1f",
+					allocated / 1048576.0 * getOpsPerSecond()));
+			sb.append(", \"gcCount\": ").append(gcCount);
+			sb.append(", \"gcTimeMs\": ").append(gcTime);
+			return sb.append('}').toString();
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%-80s %-10s %-6s %12.3f %10.3f %12d %6d", c.getName(), type, size,
+					getOpsPerSecond(), getNanosPerPixel(), allocated, gcCount);
+		}
+	}
+
+}
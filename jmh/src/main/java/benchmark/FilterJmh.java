@@ -0,0 +1,141 @@
+package benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// The cases of FilterBenchmark run by JMH, one benchmark per case, size and type. Each reports ops/s, or
+// ns/op in average time mode, with the same per pixel as the secondary "pixels" result and, through the
+// GC profiler, the allocation rate and the bytes allocated per operation.
+//
+// usage: java -jar jmh/target/benchmarks.jar [options], from the project folder so data/Lenna.png is found
+//   --sizes 512,2k,4k,8k           image sizes
+//   --types INT_RGB,INT_ARGB,...   image types (INT_RGB, INT_ARGB, 3BYTE_BGR, BYTE_GRAY)
+//   --filter <regex>               only cases whose name matches, e.g. "Median.*"
+//   --warmup <n>                   warmup iterations (default 2)
+//   --iterations <n>               measured iterations (default 5)
+//   --forks <n>                    JVM forks (default 1)
+//   --mode thrpt|avgt              ops/s and pixels/s, or ns/op and ns/pixel (default thrpt)
+//   --json <file>                  also write the results as JSON
+@State(Scope.Benchmark)
+public class FilterJmh {
+
+	// the case names are passed by main(), they are not known at compile time
+	@Param({ "" })
+	public String name;
+
+	@Param({ "512" })
+	public String size;
+
+	@Param({ "INT_RGB" })
+	public String type;
+
+	private FilterBenchmark.Operation operation;
+	private BufferedImage image;
+
+	// pixels processed, so JMH reports them per second or the time per pixel along with the operations
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Pixels {
+		public long pixels;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			pixels = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		operation = new FilterBenchmark().getOperation(name);
+		image = FilterBenchmark.createImage(size, type);
+	}
+
+	@Benchmark
+	public Object filter(final Pixels pixels) {
+		pixels.pixels += (long) image.getWidth() * image.getHeight();
+		return operation.apply(image);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String[] sizes = { "512" };
+		String[] types = { "INT_RGB" };
+		Pattern filter = Pattern.compile("");
+		int warmup = 2, iterations = 5, forks = 1;
+		Mode mode = Mode.Throughput;
+		String json = null;
+
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "--sizes":
+				sizes = args[++i].split(",");
+				break;
+			case "--types":
+				types = args[++i].split(",");
+				break;
+			case "--filter":
+				filter = Pattern.compile(args[++i]);
+				break;
+			case "--warmup":
+				warmup = Integer.parseInt(args[++i]);
+				break;
+			case "--iterations":
+				iterations = Math.max(1, Integer.parseInt(args[++i]));
+				break;
+			case "--forks":
+				forks = Integer.parseInt(args[++i]);
+				break;
+			case "--mode":
+				mode = Mode.deepValueOf(args[++i]);
+				break;
+			case "--json":
+				json = args[++i];
+				break;
+			default:
+				System.err.println("unknown option: " + args[i]);
+				System.exit(1);
+			}
+		}
+
+		final List<String> names = new ArrayList<>();
+		for (String name : new FilterBenchmark().getNames()) {
+			if (filter.matcher(name).find()) {
+				names.add(name);
+			}
+		}
+		if (names.isEmpty()) {
+			System.err.println("no benchmark matches " + filter);
+			System.exit(1);
+		}
+
+		final ChainedOptionsBuilder options = new OptionsBuilder().include(FilterJmh.class.getName() + ".filter")
+				.param("name", names.toArray(new String[0])).param("size", sizes).param("type", types)
+				.warmupIterations(warmup).measurementIterations(iterations).forks(forks).mode(mode)
+				.timeUnit(mode == Mode.Throughput ? TimeUnit.SECONDS : TimeUnit.NANOSECONDS)
+				.addProfiler(GCProfiler.class);
+		if (json != null) {
+			options.result(json).resultFormat(ResultFormatType.JSON);
+		}
+
+		new Runner(options.build()).run();
+	}
+
+}
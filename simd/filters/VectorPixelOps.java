@@ -0,0 +1,99 @@
+package filters;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// PixelOps on the Vector API, loaded by PixelOps.get() when this folder is compiled and run with
+// --add-modules jdk.incubator.vector. A vector of packed pixels is split into one int vector per
+// channel, combined lane by lane and packed again; the tail of each range goes to the scalar loops.
+// The JIT already vectorizes the scalar bitwise loops, and the blend's table lookup per channel is
+// already faster than blending vectors of doubles, so those are inherited.
+final class VectorPixelOps extends ScalarPixelOps {
+
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public void add(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		int p = from;
+		for (final int bound = from + INTS.loopBound(to - from); p < bound; p += INTS.length()) {
+			final IntVector x = IntVector.fromArray(INTS, a, p);
+			final IntVector y = IntVector.fromArray(INTS, b, p);
+
+			final IntVector r = channel(x, 16).add(channel(y, 16)).min(255);
+			final IntVector g = channel(x, 8).add(channel(y, 8)).min(255);
+			final IntVector bl = channel(x, 0).add(channel(y, 0)).min(255);
+
+			pack(r, g, bl).intoArray(dst, p);
+		}
+
+		super.add(a, b, dst, p, to);
+	}
+
+	@Override
+	public void sub(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		int p = from;
+		for (final int bound = from + INTS.loopBound(to - from); p < bound; p += INTS.length()) {
+			final IntVector x = IntVector.fromArray(INTS, a, p);
+			final IntVector y = IntVector.fromArray(INTS, b, p);
+
+			final IntVector r = channel(x, 16).sub(channel(y, 16)).max(0);
+			final IntVector g = channel(x, 8).sub(channel(y, 8)).max(0);
+			final IntVector bl = channel(x, 0).sub(channel(y, 0)).max(0);
+
+			pack(r, g, bl).intoArray(dst, p);
+		}
+
+		super.sub(a, b, dst, p, to);
+	}
+
+	@Override
+	public void mul(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		int p = from;
+		for (final int bound = from + INTS.loopBound(to - from); p < bound; p += INTS.length()) {
+			final IntVector x = IntVector.fromArray(INTS, a, p);
+			final IntVector y = IntVector.fromArray(INTS, b, p);
+
+			final IntVector r = channel(x, 16).mul(channel(y, 16)).min(255);
+			final IntVector g = channel(x, 8).mul(channel(y, 8)).min(255);
+			final IntVector bl = channel(x, 0).mul(channel(y, 0)).min(255);
+
+			pack(r, g, bl).intoArray(dst, p);
+		}
+
+		super.mul(a, b, dst, p, to);
+	}
+
+	@Override
+	public void div(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		int p = from;
+		for (final int bound = from + INTS.loopBound(to - from); p < bound; p += INTS.length()) {
+			final IntVector x = IntVector.fromArray(INTS, a, p);
+			final IntVector y = IntVector.fromArray(INTS, b, p);
+
+			pack(quotient(channel(x, 16), channel(y, 16)), quotient(channel(x, 8), channel(y, 8)),
+					quotient(channel(x, 0), channel(y, 0))).intoArray(dst, p);
+		}
+
+		super.div(a, b, dst, p, to);
+	}
+
+	private static IntVector channel(final IntVector pixels, final int shift) {
+		return pixels.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+	}
+
+	private static IntVector pack(final IntVector r, final IntVector g, final IntVector b) {
+		return r.lanewise(VectorOperators.LSHL, 16).or(g.lanewise(VectorOperators.LSHL, 8)).or(b).or(OPAQUE);
+	}
+
+	// x / max(1, y) for channel values: the float quotient of two integers below 256 is never within
+	// rounding error of the next integer, so truncating it gives the integer division
+	private static IntVector quotient(final IntVector x, final IntVector y) {
+		final FloatVector fx = (FloatVector) x.convert(VectorOperators.I2F, 0);
+		final FloatVector fy = (FloatVector) y.max(1).convert(VectorOperators.I2F, 0);
+
+		return (IntVector) fx.div(fy).convert(VectorOperators.F2I, 0);
+	}
+
+}
@@ -1,6 +1,7 @@
 package filters;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 
 public abstract class BaseFilter {
 
@@ -9,9 +10,21 @@ public abstract class BaseFilter {
 	public static final int B = 2;
 	public static final int A = 3;
 
+	// how kernel filters read the neighbours outside the image
+	public static final int CLAMP = 0; // nearest edge pixel
+	public static final int MIRROR = 1; // reflected about the edge, edge pixel repeated: cba|abc|cba
+	public static final int WRAP = 2; // pixel from the opposite side
+	public static final int CONSTANT = 3; // border color
+
 	protected BufferedImage image, newimage;
 	protected final int height, width, type;
 
+	protected int border = CLAMP;
+	protected int borderColor = 0xFF000000;
+
+	// source pixels, packed ARGB, one row after another (stride = width)
+	private int[] pixels;
+
 	public BaseFilter(final BufferedImage image) {
 		this.image = image;
 
@@ -20,7 +33,219 @@ public abstract class BaseFilter {
 		type = image.getType();
 	}
 
-	public int clamp(final int value) {
+	public int getBorder() {
+		return border;
+	}
+
+	public void setBorder(final int border) {
+		if (border != CLAMP && border != MIRROR && border != WRAP && border != CONSTANT) {
+			throw new IllegalArgumentException("Unknown border mode: " + border);
+		}
+
+		this.border = border;
+	}
+
+	public int getBorderColor() {
+		return borderColor;
+	}
+
+	// packed RGB of the CONSTANT border mode
+	public void setBorderColor(final int borderColor) {
+		this.borderColor = borderColor;
+	}
+
+	protected int[] getPixels() {
+		if (pixels == null) {
+			pixels = getPixels(image);
+		}
+
+		return pixels;
+	}
+
+	// runs the row loop of a filter over the destination rows, possibly in parallel
+	protected void forEachRow(final FilterExecutor.Rows rows) {
+		FilterExecutor.forEachRow(height, rows);
+	}
+
+	// same, for the loops that take their band buffers from the scratch of the thread
+	void forEachRow(final Scratch.Rows rows) {
+		FilterExecutor.forEachRow(height, rows);
+	}
+
+	// single pass of a point operation over the whole image
+	protected BufferedImage apply(final LookupTable table) {
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
+
+		forEachRow((from, to) -> table.apply(src, dst, from * width, to * width));
+
+		newimage = createImage(dst);
+
+		return newimage;
+	}
+
+	// image-image operation over the whole image, the second image read in its top-left width x height window
+	protected BufferedImage combine(final BufferedImage image2, final PixelOps.Range operation) {
+		final int[] src = getPixels();
+		final int[] src2 = getPixels(image2, width, height);
+		final int[] dst = new int[src.length];
+
+		forEachRow((from, to) -> operation.apply(src, src2, dst, from * width, to * width));
+
+		newimage = createImage(dst);
+
+		return newimage;
+	}
+
+	protected BufferedImage createImage(final int[] data) {
+		return createImage(data, width, height, type);
+	}
+
+	protected BufferedImage createImage(final int[] data, final int w, final int h) {
+		return createImage(data, w, h, type);
+	}
+
+	// whether an image of this type holds any packed ARGB pixel written to it and reads it back unchanged,
+	// so filters applied one after another give the same pixels as a single pass of all of them
+	public static boolean isExact(final BufferedImage image) {
+		switch (image.getType()) {
+		case BufferedImage.TYPE_INT_RGB:
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_3BYTE_BGR:
+		case BufferedImage.TYPE_4BYTE_ABGR:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	// reads the whole image as packed ARGB, avoiding the color model for the common raster layouts
+	public static int[] getPixels(final BufferedImage image) {
+		final int w = image.getWidth();
+		final int h = image.getHeight();
+		final int[] data = new int[w * h];
+		final WritableRaster raster = image.getRaster();
+
+		switch (image.getType()) {
+		case BufferedImage.TYPE_INT_ARGB: {
+			raster.getDataElements(0, 0, w, h, data);
+			break;
+		}
+		case BufferedImage.TYPE_INT_RGB: {
+			raster.getDataElements(0, 0, w, h, data);
+			for (int p = 0; p < data.length; p++) {
+				data[p] |= 0xFF000000;
+			}
+			break;
+		}
+		case BufferedImage.TYPE_3BYTE_BGR: {
+			final byte[] bytes = (byte[]) raster.getDataElements(0, 0, w, h, null);
+			for (int p = 0, b = 0; p < data.length; p++, b += 3) {
+				data[p] = 0xFF000000 | (bytes[b] & 0xFF) << 16 | (bytes[b + 1] & 0xFF) << 8 | (bytes[b + 2] & 0xFF);
+			}
+			break;
+		}
+		case BufferedImage.TYPE_4BYTE_ABGR: {
+			final byte[] bytes = (byte[]) raster.getDataElements(0, 0, w, h, null);
+			for (int p = 0, b = 0; p < data.length; p++, b += 4) {
+				data[p] = (bytes[b + 3] & 0xFF) << 24 | (bytes[b] & 0xFF) << 16 | (bytes[b + 1] & 0xFF) << 8
+						| (bytes[b + 2] & 0xFF);
+			}
+			break;
+		}
+		default:
+			image.getRGB(0, 0, w, h, data, 0, w);
+			break;
+		}
+
+		return data;
+	}
+
+	// reads the top-left w x h window of an image, used for the second operand of image-image filters
+	public static int[] getPixels(final BufferedImage image, final int w, final int h) {
+		if (image.getWidth() == w && image.getHeight() == h) {
+			return getPixels(image);
+		}
+
+		return image.getRGB(0, 0, w, h, null, 0, w);
+	}
+
+	// writes packed ARGB pixels into a new image of the given type
+	public static BufferedImage createImage(final int[] data, final int w, final int h, int type) {
+		if (type == BufferedImage.TYPE_CUSTOM) {
+			type = BufferedImage.TYPE_INT_ARGB;
+		}
+
+		final BufferedImage image = new BufferedImage(w, h, type);
+		final WritableRaster raster = image.getRaster();
+
+		switch (type) {
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_INT_RGB: {
+			raster.setDataElements(0, 0, w, h, data);
+			break;
+		}
+		case BufferedImage.TYPE_3BYTE_BGR: {
+			final byte[] bytes = new byte[data.length * 3];
+			for (int p = 0, b = 0; p < data.length; p++, b += 3) {
+				final int px = data[p];
+				bytes[b] = (byte) (px >> 16);
+				bytes[b + 1] = (byte) (px >> 8);
+				bytes[b + 2] = (byte) px;
+			}
+			raster.setDataElements(0, 0, w, h, bytes);
+			break;
+		}
+		case BufferedImage.TYPE_4BYTE_ABGR: {
+			final byte[] bytes = new byte[data.length * 4];
+			for (int p = 0, b = 0; p < data.length; p++, b += 4) {
+				final int px = data[p];
+				bytes[b] = (byte) (px >> 16);
+				bytes[b + 1] = (byte) (px >> 8);
+				bytes[b + 2] = (byte) px;
+				bytes[b + 3] = (byte) (px >> 24);
+			}
+			raster.setDataElements(0, 0, w, h, bytes);
+			break;
+		}
+		default:
+			image.setRGB(0, 0, w, h, data, 0, w);
+			break;
+		}
+
+		return image;
+	}
+
+	// source index of the positions -offset .. length - offset - 1 along an axis of the given size, with
+	// the positions outside the image mapped by the border mode and -1 for the border color, so that
+	// only the code copying source rows has to deal with the border
+	protected int[] borderIndex(final int size, final int offset, final int length) {
+		final int[] index = new int[length];
+		for (int i = 0; i < length; i++) {
+			final int v = i - offset;
+
+			switch (border) {
+			case MIRROR: {
+				final int m = Math.floorMod(v, 2 * size);
+				index[i] = m < size ? m : 2 * size - 1 - m;
+				break;
+			}
+			case WRAP:
+				index[i] = Math.floorMod(v, size);
+				break;
+			case CONSTANT:
+				index[i] = v >= 0 && v < size ? v : -1;
+				break;
+			default:
+				index[i] = clamp(v, 0, size - 1);
+				break;
+			}
+		}
+
+		return index;
+	}
+
+	public static int clamp(final int value) {
 		if (value < 0) {
 			return 0;
 		} else if (value > 255) {
@@ -30,7 +255,7 @@ public abstract class BaseFilter {
 		return value;
 	}
 
-	public int clamp(final int value, final int min, final int max) {
+	public static int clamp(final int value, final int min, final int max) {
 		if (value < min) {
 			return min;
 		} else if (value > max) {
@@ -40,7 +265,7 @@ public abstract class BaseFilter {
 		return value;
 	}
 
-	public int clamp(final double value) {
+	public static int clamp(final double value) {
 		if (value < 0) {
 			return 0;
 		} else if (value > 255) {
@@ -50,51 +275,55 @@ public abstract class BaseFilter {
 		return (int) value;
 	}
 
-	public int colorRGB(final int[] rgb) {
-		final int[] color = new int[] { 0, 0, 0 };
-		System.arraycopy(rgb, 0, color, 0, rgb.length > 3 ? 3 : rgb.length);
+	public static int colorRGB(final int[] rgb) {
+		final int r = rgb.length > R ? rgb[R] : 0;
+		final int g = rgb.length > G ? rgb[G] : 0;
+		final int b = rgb.length > B ? rgb[B] : 0;
 
-		return colorRGB(color[R], color[G], color[B]);
+		return colorRGB(r, g, b);
 	}
 
-	public int colorRGB(final int r, final int g, final int b) {
+	public static int colorRGB(final int r, final int g, final int b) {
 		return (0xFF000000 | r << 16 | g << 8 | b);
 	}
 
-	public int colorRGBA(final int[] rgba) {
-		final int[] color = new int[] { 0, 0, 0, 0 };
-		System.arraycopy(rgba, 0, color, 0, rgba.length > 4 ? 4 : rgba.length);
+	public static int colorRGBA(final int[] rgba) {
+		final int r = rgba.length > R ? rgba[R] : 0;
+		final int g = rgba.length > G ? rgba[G] : 0;
+		final int b = rgba.length > B ? rgba[B] : 0;
+		final int a = rgba.length > A ? rgba[A] : 0;
 
-		return colorRGBA(color[R], color[G], color[B], color[A]);
+		return colorRGBA(r, g, b, a);
 	}
 
-	public int colorRGBA(final int r, final int g, final int b, final int a) {
+	public static int colorRGBA(final int r, final int g, final int b, final int a) {
 		return (a << 24 | r << 16 | g << 8 | b);
 	}
 
-	public int getTransparency(final int color) {
+	public static int getTransparency(final int color) {
 		return (color >> 24);
 	}
 
-	public int getRed(final int color) {
+	public static int getRed(final int color) {
 		return (color >> 16) & 0xFF;
 	}
 
-	public int getGreen(final int color) {
+	public static int getGreen(final int color) {
 		return (color >> 8) & 0xFF;
 	}
 
-	public int getBlue(final int color) {
+	public static int getBlue(final int color) {
 		return (color & 0xFF);
 	}
 
-	public int getGrayscale(final int color) {
+	public static int getGrayscale(final int color) {
 		final int r = (color >> 16) & 0xFF;
 		final int g = (color >> 8) & 0xFF;
 		final int b = (color & 0xFF);
 		return Math.round((0.2126f * r + 0.7152f * g + 0.0722f * b));
 	}
 
+	// allocates a new array on every call, hot loops should use getRed/getGreen/getBlue instead
 	public int[] getRGBComponents(final int color) {
 		return new int[] { (color >> 16) & 0xFF, (color >> 8) & 0xFF, (color & 0xFF) };
 	}
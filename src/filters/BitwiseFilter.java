@@ -9,139 +9,48 @@ public class BitwiseFilter extends BaseFilter {
 	}
 
 	public BufferedImage and(int k) {
-		newimage = new BufferedImage(width, height, type);
+		final int c = clamp(k);
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
-				int[] rgb = getRGBComponents(px);
-
-				rgb[R] &= clamp(k);
-				rgb[G] &= clamp(k);
-				rgb[B] &= clamp(k);
-
-				newimage.setRGB(i, j, colorRGB(rgb));
-			}
-		}
-
-		return newimage;
+		return apply(LookupTable.perChannel(v -> v & c));
 	}
 
 	public BufferedImage or(int k) {
-		newimage = new BufferedImage(width, height, type);
+		final int c = clamp(k);
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
-				int[] rgb = getRGBComponents(px);
-
-				rgb[R] |= clamp(k);
-				rgb[G] |= clamp(k);
-				rgb[B] |= clamp(k);
-
-				newimage.setRGB(i, j, colorRGB(rgb));
-			}
-		}
-
-		return newimage;
+		return apply(LookupTable.perChannel(v -> v | c));
 	}
 
+	// a single instruction per pixel, faster than LookupTable.invert()
 	public BufferedImage not() {
-		newimage = new BufferedImage(width, height, type);
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
-
-				newimage.setRGB(i, j, ~px);
+		forEachRow((from, to) -> {
+			for (int p = from * width; p < to * width; p++) {
+				dst[p] = ~src[p];
 			}
-		}
+		});
+
+		newimage = createImage(dst);
 
 		return newimage;
 	}
 
 	public BufferedImage xor(int k) {
-		newimage = new BufferedImage(width, height, type);
-
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
-				int[] rgb = getRGBComponents(px);
+		final int c = clamp(k);
 
-				rgb[R] ^= clamp(k);
-				rgb[G] ^= clamp(k);
-				rgb[B] ^= clamp(k);
-
-				newimage.setRGB(i, j, colorRGB(rgb));
-			}
-		}
-
-		return newimage;
+		return apply(LookupTable.perChannel(v -> v ^ c));
 	}
 
 	public BufferedImage and(BufferedImage image2) {
-		newimage = new BufferedImage(width, height, type);
-
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
-				int px2 = image2.getRGB(i, j);
-
-				int[] rgb = getRGBComponents(px);
-				int[] rgb2 = getRGBComponents(px2);
-
-				rgb[R] &= rgb2[R];
-				rgb[G] &= rgb2[G];
-				rgb[B] &= rgb2[B];
-
-				newimage.setRGB(i, j, colorRGB(rgb));
-			}
-		}
-
-		return newimage;
+		return combine(image2, PixelOps.get()::and);
 	}
 
 	public BufferedImage or(BufferedImage image2) {
-		newimage = new BufferedImage(width, height, type);
-
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
-				int px2 = image2.getRGB(i, j);
-
-				int[] rgb = getRGBComponents(px);
-				int[] rgb2 = getRGBComponents(px2);
-
-				rgb[R] |= rgb2[R];
-				rgb[G] |= rgb2[G];
-				rgb[B] |= rgb2[B];
-
-				newimage.setRGB(i, j, colorRGB(rgb));
-			}
-		}
-
-		return newimage;
+		return combine(image2, PixelOps.get()::or);
 	}
 
 	public BufferedImage xor(BufferedImage image2) {
-		newimage = new BufferedImage(width, height, type);
-
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
-				int px2 = image2.getRGB(i, j);
-
-				int[] rgb = getRGBComponents(px);
-				int[] rgb2 = getRGBComponents(px2);
-
-				rgb[R] ^= rgb2[R];
-				rgb[G] ^= rgb2[G];
-				rgb[B] ^= rgb2[B];
-
-				newimage.setRGB(i, j, colorRGB(rgb));
-			}
-		}
-
-		return newimage;
+		return combine(image2, PixelOps.get()::xor);
 	}
 }
@@ -9,27 +9,20 @@ public class BlendingFilter extends BaseFilter {
 	}
 
 	public BufferedImage blend(BufferedImage image2, double level) {
-		newimage = new BufferedImage(width, height, type);
-
-		level /= 100f;
-		double level2 = 1f - level;
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
-				int px2 = image2.getRGB(i, j);
-
-				int rgb[] = getRGBComponents(px);
-				int rgb2[] = getRGBComponents(px2);
-
-				int r = clamp(rgb[R] * level + rgb2[R] * level2);
-				int g = clamp(rgb[G] * level + rgb2[G] * level2);
-				int b = clamp(rgb[B] * level + rgb2[B] * level2);
-
-				newimage.setRGB(i, j, colorRGB(r, g, b));
+		final double level1 = level / 100f;
+		final double level2 = 1f - level1;
+
+		// each output channel depends only on the two input channels, computed once for every pair
+		final byte[] table = new byte[256 * 256];
+		for (int c1 = 0; c1 < 256; c1++) {
+			for (int c2 = 0; c2 < 256; c2++) {
+				table[(c1 << 8) | c2] = (byte) clamp(c1 * level1 + c2 * level2);
 			}
 		}
 
-		return newimage;
+		final PixelOps ops = PixelOps.get();
+
+		return combine(image2, (a, b, dst, from, to) -> ops.blend(a, b, dst, from, to, table));
 	}
 
 }
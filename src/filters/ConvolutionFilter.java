@@ -1,62 +1,507 @@
 package filters;
 
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 public class ConvolutionFilter extends BaseFilter {
 
+	// how convolution() computes a kernel that is not separable
+	public static final int AUTO = 0;
+	public static final int DIRECT = 1;
+	public static final int FFT = 2;
+
+	// rows of the intermediate buffer of the separable path, per band
+	private static final int CHUNK = 64;
+
+	// kernel area from which the FFT beats the direct loop: on 512x512 to 3840x2160 images the direct
+	// loop is still as fast or faster at 11x11, they break even at 13x13 on 512x512 and the FFT is 1.3
+	// times faster at 13x13 on the larger ones, 1.3 to 1.7 times at 15x15
+	private static final int FFT_AREA = 169;
+
+	// output rows of the FFT path per band, in output blocks of the correlator
+	private static final int FFT_BLOCKS = 4;
+
+	// largest relative error (Frobenius norm) accepted when approximating a kernel by a rank-1 one,
+	// 0 only takes the separable path for kernels that factor exactly
+	private double tolerance = 0;
+
+	private int method = AUTO;
+
 	public ConvolutionFilter(BufferedImage image) {
 		super(image);
 	}
 
-	public BufferedImage convolution(final int[][] kernel, final float divider) {
-		newimage = new BufferedImage(width, height, type);
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	public void setTolerance(final double tolerance) {
+		this.tolerance = Math.max(0, tolerance);
+	}
 
+	public int getMethod() {
+		return method;
+	}
+
+	public void setMethod(final int method) {
+		if (method != AUTO && method != DIRECT && method != FFT) {
+			throw new IllegalArgumentException("Unknown convolution method: " + method);
+		}
+
+		this.method = method;
+	}
+
+	public BufferedImage convolution(final int[][] kernel, final float divider) {
 		final int kh = kernel.length;
 		final int kw = kernel[0].length;
 
-		final int kx = (kw - 1) / 2;
-		final int ky = (kh - 1) / 2;
+		if (method == FFT) {
+			return fourier(kernel, divider);
+		}
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
+		// two 1-D passes cost kw + kh taps instead of kw * kh
+		if (kw * kh > kw + kh) {
+			final int[][] exact = factor(kernel);
+			if (exact != null) {
+				return separable(exact[0], exact[1], divider);
+			}
 
-				int r = 0, g = 0, b = 0;
+			final double[][] approximation = tolerance > 0 ? approximate(kernel, tolerance) : null;
+			if (approximation != null) {
+				return separable(approximation[0], approximation[1], divider);
+			}
+		}
+
+		if (method == AUTO && kw * kh >= FFT_AREA) {
+			return fourier(kernel, divider);
+		}
+
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
+
+		final int[] xs = borderIndex(width, (kw - 1) / 2, width + kw - 1);
+		final int[] ys = borderIndex(height, (kh - 1) / 2, height + kh - 1);
 
+		forEachRow((from, to, scratch) -> {
+			final PaddedRows rows = new PaddedRows(src, width, xs, ys, borderColor, kh, scratch);
+			final int[] sr = scratch.ints(width);
+			final int[] sg = scratch.ints(width);
+			final int[] sb = scratch.ints(width);
+
+			for (int j = from; j < to; j++) {
+				rows.moveTo(j);
+
+				// one kernel tap at a time over the whole row
 				for (int kr = 0; kr < kh; kr++) {
+					final int[] pr = rows.red(kr);
+					final int[] pg = rows.green(kr);
+					final int[] pb = rows.blue(kr);
+
+					for (int kc = 0; kc < kw; kc++) {
+						final int kv = kernel[kr][kc];
+						if (kv == 0) {
+							continue;
+						}
+
+						for (int i = 0; i < width; i++) {
+							sr[i] += pr[i + kc] * kv;
+							sg[i] += pg[i + kc] * kv;
+							sb[i] += pb[i + kc] * kv;
+						}
+					}
+				}
+
+				for (int i = 0, p = j * width; i < width; i++, p++) {
+					final int r = clamp(Math.round(sr[i] / divider));
+					final int g = clamp(Math.round(sg[i] / divider));
+					final int b = clamp(Math.round(sb[i] / divider));
+
+					dst[p] = colorRGB(r, g, b);
+				}
+
+				Arrays.fill(sr, 0);
+				Arrays.fill(sg, 0);
+				Arrays.fill(sb, 0);
+			}
+		});
+
+		newimage = createImage(dst);
+
+		return newimage;
+	}
+
+	// integer factors with kernel[r][c] == column[r] * row[c], null if there are none
+	private static int[][] factor(final int[][] kernel) {
+		final int kh = kernel.length;
+		final int kw = kernel[0].length;
+
+		// the first non-zero row, divided by the gcd of its entries, is the row factor
+		int pr = -1, pc = -1;
+		for (int r = 0; r < kh && pr < 0; r++) {
+			for (int c = 0; c < kw; c++) {
+				if (kernel[r][c] != 0) {
+					pr = r;
+					pc = c;
+					break;
+				}
+			}
+		}
+
+		if (pr < 0) {
+			return null;
+		}
+
+		int gcd = 0;
+		for (int c = 0; c < kw; c++) {
+			gcd = gcd(gcd, Math.abs(kernel[pr][c]));
+		}
+
+		final int[] row = new int[kw];
+		for (int c = 0; c < kw; c++) {
+			row[c] = kernel[pr][c] / gcd;
+		}
+
+		final int[] column = new int[kh];
+		for (int r = 0; r < kh; r++) {
+			if (kernel[r][pc] % row[pc] != 0) {
+				return null;
+			}
+			column[r] = kernel[r][pc] / row[pc];
+
+			for (int c = 0; c < kw; c++) {
+				if (kernel[r][c] != column[r] * row[c]) {
+					return null;
+				}
+			}
+		}
+
+		return new int[][] { column, row };
+	}
+
+	private static int gcd(int a, int b) {
+		while (b != 0) {
+			final int t = a % b;
+			a = b;
+			b = t;
+		}
+
+		return a;
+	}
+
+	// best rank-1 approximation sigma * u * v^T from the leading singular vectors,
+	// found by power iteration on K^T K; null if its relative error exceeds the tolerance
+	private static double[][] approximate(final int[][] kernel, final double tolerance) {
+		final int kh = kernel.length;
+		final int kw = kernel[0].length;
+
+		double norm = 0;
+		for (int r = 0; r < kh; r++) {
+			for (int c = 0; c < kw; c++) {
+				norm += (double) kernel[r][c] * kernel[r][c];
+			}
+		}
+
+		if (norm == 0) {
+			return null;
+		}
+
+		final double[][] gram = new double[kw][kw];
+		for (int a = 0; a < kw; a++) {
+			for (int b = 0; b < kw; b++) {
+				double sum = 0;
+				for (int r = 0; r < kh; r++) {
+					sum += (double) kernel[r][a] * kernel[r][b];
+				}
+				gram[a][b] = sum;
+			}
+		}
+
+		double[] v = new double[kw];
+		for (int c = 0; c < kw; c++) {
+			v[c] = 1 + c * 1e-3;
+		}
+
+		for (int iteration = 0; iteration < 200; iteration++) {
+			final double[] next = new double[kw];
+			double length = 0;
+			for (int a = 0; a < kw; a++) {
+				double sum = 0;
+				for (int b = 0; b < kw; b++) {
+					sum += gram[a][b] * v[b];
+				}
+				next[a] = sum;
+				length += sum * sum;
+			}
+
+			length = Math.sqrt(length);
+			if (length == 0) {
+				return null;
+			}
+
+			double change = 0;
+			for (int a = 0; a < kw; a++) {
+				next[a] /= length;
+				change += Math.abs(next[a] - v[a]);
+			}
+
+			v = next;
+			if (change < 1e-12) {
+				break;
+			}
+		}
+
+		// u scaled by sigma is K v
+		final double[] u = new double[kh];
+		for (int r = 0; r < kh; r++) {
+			double sum = 0;
+			for (int c = 0; c < kw; c++) {
+				sum += kernel[r][c] * v[c];
+			}
+			u[r] = sum;
+		}
+
+		double error = 0;
+		for (int r = 0; r < kh; r++) {
+			for (int c = 0; c < kw; c++) {
+				final double e = kernel[r][c] - u[r] * v[c];
+				error += e * e;
+			}
+		}
+
+		return Math.sqrt(error / norm) <= tolerance ? new double[][] { u, v } : null;
+	}
+
+	// convolution with the kernel column x row as a horizontal pass into an intermediate buffer
+	// followed by a vertical pass; integer arithmetic gives the same sums as the 2-D loop
+	private BufferedImage separable(final int[] column, final int[] row, final float divider) {
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
+
+		final int kh = column.length;
+		final int kw = row.length;
+
+		final int[] xs = borderIndex(width, (kw - 1) / 2, width + kw - 1);
+		final int[] ys = borderIndex(height, (kh - 1) / 2, height + kh - 1);
+
+		// the same for every band, so that the bands of the thread share them
+		final int lines = Math.min(CHUNK, height) + kh - 1;
+
+		forEachRow((from, to, scratch) -> {
+			final int[] hr = scratch.ints(lines * width);
+			final int[] hg = scratch.ints(lines * width);
+			final int[] hb = scratch.ints(lines * width);
+
+			// one source row, unpacked and padded, and the sums of one output row
+			final int[] pr = scratch.ints(xs.length);
+			final int[] pg = scratch.ints(xs.length);
+			final int[] pb = scratch.ints(xs.length);
+			final int[] sr = scratch.ints(width);
+			final int[] sg = scratch.ints(width);
+			final int[] sb = scratch.ints(width);
+
+			for (int y0 = from; y0 < to; y0 += CHUNK) {
+				final int y1 = Math.min(y0 + CHUNK, to);
+
+				// horizontal pass over the source rows read by the output rows y0 .. y1 - 1
+				for (int l = 0; l < y1 - y0 + kh - 1; l++) {
+					final int line = ys[y0 + l] * width;
+					for (int x = 0; x < xs.length; x++) {
+						final int px = line < 0 || xs[x] < 0 ? borderColor : src[line + xs[x]];
+						pr[x] = getRed(px);
+						pg[x] = getGreen(px);
+						pb[x] = getBlue(px);
+					}
+
+					final int t = l * width;
 					for (int kc = 0; kc < kw; kc++) {
+						final int kv = row[kc];
+						for (int i = 0; i < width; i++) {
+							hr[t + i] += pr[i + kc] * kv;
+							hg[t + i] += pg[i + kc] * kv;
+							hb[t + i] += pb[i + kc] * kv;
+						}
+					}
+				}
+
+				// vertical pass
+				for (int j = y0; j < y1; j++) {
+					for (int kr = 0, t = (j - y0) * width; kr < kh; kr++, t += width) {
+						final int kv = column[kr];
+						for (int i = 0; i < width; i++) {
+							sr[i] += hr[t + i] * kv;
+							sg[i] += hg[t + i] * kv;
+							sb[i] += hb[t + i] * kv;
+						}
+					}
+
+					for (int i = 0, p = j * width; i < width; i++, p++) {
+						dst[p] = colorRGB(clamp(Math.round(sr[i] / divider)), clamp(Math.round(sg[i] / divider)),
+								clamp(Math.round(sb[i] / divider)));
+					}
+
+					Arrays.fill(sr, 0);
+					Arrays.fill(sg, 0);
+					Arrays.fill(sb, 0);
+				}
+
+				Arrays.fill(hr, 0);
+				Arrays.fill(hg, 0);
+				Arrays.fill(hb, 0);
+			}
+		});
+
+		newimage = createImage(dst);
+
+		return newimage;
+	}
 
-						int tx = (i - kx + kc);
-						int ty = (j - ky + kr);
+	// same passes with real weights, for the approximation of a kernel that does not factor exactly
+	private BufferedImage separable(final double[] column, final double[] row, final float divider) {
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
+
+		final int kh = column.length;
+		final int kw = row.length;
+
+		final int[] xs = borderIndex(width, (kw - 1) / 2, width + kw - 1);
+		final int[] ys = borderIndex(height, (kh - 1) / 2, height + kh - 1);
+
+		final int lines = Math.min(CHUNK, height) + kh - 1;
+
+		forEachRow((from, to, scratch) -> {
+			final double[] hr = scratch.doubles(lines * width);
+			final double[] hg = scratch.doubles(lines * width);
+			final double[] hb = scratch.doubles(lines * width);
+
+			final double[] pr = scratch.doubles(xs.length);
+			final double[] pg = scratch.doubles(xs.length);
+			final double[] pb = scratch.doubles(xs.length);
+			final double[] sr = scratch.doubles(width);
+			final double[] sg = scratch.doubles(width);
+			final double[] sb = scratch.doubles(width);
+
+			for (int y0 = from; y0 < to; y0 += CHUNK) {
+				final int y1 = Math.min(y0 + CHUNK, to);
+
+				for (int l = 0; l < y1 - y0 + kh - 1; l++) {
+					final int line = ys[y0 + l] * width;
+					for (int x = 0; x < xs.length; x++) {
+						final int px = line < 0 || xs[x] < 0 ? borderColor : src[line + xs[x]];
+						pr[x] = getRed(px);
+						pg[x] = getGreen(px);
+						pb[x] = getBlue(px);
+					}
 
-						if (tx < 0) {
-							tx = 0;
-						} else if (tx >= width) {
-							tx = width - 1;
+					final int t = l * width;
+					for (int kc = 0; kc < kw; kc++) {
+						final double kv = row[kc];
+						for (int i = 0; i < width; i++) {
+							hr[t + i] += pr[i + kc] * kv;
+							hg[t + i] += pg[i + kc] * kv;
+							hb[t + i] += pb[i + kc] * kv;
 						}
+					}
+				}
 
-						if (ty < 0) {
-							ty = 0;
-						} else if (ty >= height) {
-							ty = height - 1;
+				for (int j = y0; j < y1; j++) {
+					for (int kr = 0, t = (j - y0) * width; kr < kh; kr++, t += width) {
+						final double kv = column[kr];
+						for (int i = 0; i < width; i++) {
+							sr[i] += hr[t + i] * kv;
+							sg[i] += hg[t + i] * kv;
+							sb[i] += hb[t + i] * kv;
 						}
-						int px = image.getRGB(tx, ty);
-						int[] rgb = getRGBComponents(px);
+					}
 
-						r += rgb[R] * kernel[kr][kc];
-						g += rgb[G] * kernel[kr][kc];
-						b += rgb[B] * kernel[kr][kc];
+					// rounded to an integer sum first, to divide as the 2-D loop does
+					for (int i = 0, p = j * width; i < width; i++, p++) {
+						dst[p] = colorRGB(clamp(Math.round((int) Math.round(sr[i]) / divider)),
+								clamp(Math.round((int) Math.round(sg[i]) / divider)),
+								clamp(Math.round((int) Math.round(sb[i]) / divider)));
 					}
 
+					Arrays.fill(sr, 0);
+					Arrays.fill(sg, 0);
+					Arrays.fill(sb, 0);
 				}
 
-				r = clamp(Math.round(r / divider));
-				g = clamp(Math.round(g / divider));
-				b = clamp(Math.round(b / divider));
+				Arrays.fill(hr, 0);
+				Arrays.fill(hg, 0);
+				Arrays.fill(hb, 0);
+			}
+		});
+
+		newimage = createImage(dst);
+
+		return newimage;
+	}
+
+	// convolution through the FFT, one band of output rows at a time; the band is read from the source
+	// padded for the border mode like the direct loop, and the correlator works on its valid region
+	private BufferedImage fourier(final int[][] kernel, final float divider) {
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
+
+		final int kh = kernel.length;
+		final int kw = kernel[0].length;
 
-				newimage.setRGB(i, j, colorRGB(r, g, b));
+		final double[] weights = new double[kw * kh];
+		for (int kr = 0; kr < kh; kr++) {
+			for (int kc = 0; kc < kw; kc++) {
+				weights[kr * kw + kc] = kernel[kr][kc];
 			}
 		}
 
+		final Correlator correlator = new Correlator(weights, kw, kh);
+
+		final int[] xs = borderIndex(width, (kw - 1) / 2, width + kw - 1);
+		final int[] ys = borderIndex(height, (kh - 1) / 2, height + kh - 1);
+		final int pw = xs.length;
+
+		final int band = correlator.blockHeight() * FFT_BLOCKS;
+		final int lines = Math.min(band, height) + kh - 1;
+
+		// the planes of one band, padded, and its sums, kept by the calling thread like the buffers of a band
+		final Scratch scratch = Scratch.acquire();
+		try {
+			final double[] pr = scratch.doubles(lines * pw);
+			final double[] pg = scratch.doubles(lines * pw);
+			final double[] pb = scratch.doubles(lines * pw);
+			final double[] r = scratch.doubles(Math.min(band, height) * width);
+			final double[] g = scratch.doubles(Math.min(band, height) * width);
+			final double[] b = scratch.doubles(Math.min(band, height) * width);
+
+			for (int y0 = 0; y0 < height; y0 += band) {
+				final int y1 = Math.min(y0 + band, height);
+				final int ph = y1 - y0 + kh - 1;
+
+				for (int l = 0, t = 0; l < ph; l++) {
+					final int line = ys[y0 + l] * width;
+					for (int x = 0; x < pw; x++, t++) {
+						final int px = line < 0 || xs[x] < 0 ? borderColor : src[line + xs[x]];
+						pr[t] = getRed(px);
+						pg[t] = getGreen(px);
+						pb[t] = getBlue(px);
+					}
+				}
+
+				correlator.correlate(pr, pw, ph, r);
+				correlator.correlate(pg, pw, ph, g);
+				correlator.correlate(pb, pw, ph, b);
+
+				// the sums are integers up to the transform error, rounded before dividing as the direct loop does
+				for (int p = 0, q = y0 * width; p < (y1 - y0) * width; p++, q++) {
+					dst[q] = colorRGB(clamp(Math.round((int) Math.round(r[p]) / divider)),
+							clamp(Math.round((int) Math.round(g[p]) / divider)),
+							clamp(Math.round((int) Math.round(b[p]) / divider)));
+				}
+			}
+		} finally {
+			scratch.release();
+		}
+
+		newimage = createImage(dst);
+
 		return newimage;
 	}
 
@@ -75,61 +520,72 @@ public class ConvolutionFilter extends BaseFilter {
 	}
 
 	private BufferedImage convolution(final int[][] kernelX, final int[][] kernelY) {
-		newimage = new BufferedImage(width, height, type);
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
 
 		final int kh = kernelX.length;
 		final int kw = kernelX[0].length;
 
-		final int kx = (kw - 1) / 2;
-		final int ky = (kh - 1) / 2;
+		final int[] xs = borderIndex(width, (kw - 1) / 2, width + kw - 1);
+		final int[] ys = borderIndex(height, (kh - 1) / 2, height + kh - 1);
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
+		forEachRow((from, to, scratch) -> {
+			final PaddedRows rows = new PaddedRows(src, width, xs, ys, borderColor, kh, scratch);
+			final int[] rx = scratch.ints(width);
+			final int[] gx = scratch.ints(width);
+			final int[] bx = scratch.ints(width);
+			final int[] ry = scratch.ints(width);
+			final int[] gy = scratch.ints(width);
+			final int[] by = scratch.ints(width);
 
-				int rx = 0, gx = 0, bx = 0;
-				int ry = 0, gy = 0, by = 0;
+			for (int j = from; j < to; j++) {
+				rows.moveTo(j);
 
 				for (int kr = 0; kr < kh; kr++) {
-					for (int kc = 0; kc < kw; kc++) {
-
-						int tx = (i - kx + kc);
-						int ty = (j - ky + kr);
-
-						if (tx < 0) {
-							tx = 0;
-						} else if (tx >= width) {
-							tx = width - 1;
-						}
-
-						if (ty < 0) {
-							ty = 0;
-						} else if (ty >= height) {
-							ty = height - 1;
-						}
-						int px = image.getRGB(tx, ty);
-						int[] rgb = getRGBComponents(px);
+					final int[] pr = rows.red(kr);
+					final int[] pg = rows.green(kr);
+					final int[] pb = rows.blue(kr);
 
+					for (int kc = 0; kc < kw; kc++) {
 						final int kvx = kernelX[kr][kc];
-						rx += rgb[R] * kvx;
-						gx += rgb[G] * kvx;
-						bx += rgb[B] * kvx;
+						if (kvx != 0) {
+							for (int i = 0; i < width; i++) {
+								rx[i] += pr[i + kc] * kvx;
+								gx[i] += pg[i + kc] * kvx;
+								bx[i] += pb[i + kc] * kvx;
+							}
+						}
 
 						final int kvy = kernelY[kr][kc];
-						ry += rgb[R] * kvy;
-						gy += rgb[G] * kvy;
-						by += rgb[B] * kvy;
+						if (kvy != 0) {
+							for (int i = 0; i < width; i++) {
+								ry[i] += pr[i + kc] * kvy;
+								gy[i] += pg[i + kc] * kvy;
+								by[i] += pb[i + kc] * kvy;
+							}
+						}
 					}
-
 				}
 
-				final int r, g, b;
-				r = clamp(Math.sqrt(rx * rx + ry * ry));
-				g = clamp(Math.sqrt(gx * gx + gy * gy));
-				b = clamp(Math.sqrt(bx * bx + by * by));
+				for (int i = 0, p = j * width; i < width; i++, p++) {
+					final int r, g, b;
+					r = clamp(Math.sqrt(rx[i] * rx[i] + ry[i] * ry[i]));
+					g = clamp(Math.sqrt(gx[i] * gx[i] + gy[i] * gy[i]));
+					b = clamp(Math.sqrt(bx[i] * bx[i] + by[i] * by[i]));
 
-				newimage.setRGB(i, j, colorRGB(r, g, b));
+					dst[p] = colorRGB(r, g, b);
+				}
+
+				Arrays.fill(rx, 0);
+				Arrays.fill(gx, 0);
+				Arrays.fill(bx, 0);
+				Arrays.fill(ry, 0);
+				Arrays.fill(gy, 0);
+				Arrays.fill(by, 0);
 			}
-		}
+		});
+
+		newimage = createImage(dst);
 
 		return newimage;
 	}
@@ -0,0 +1,147 @@
+package filters;
+
+import java.util.Arrays;
+
+// Cross-correlation of a plane with a fixed kernel through the FFT, keeping only the valid region:
+// out[y][x] = sum of kernel[r][c] * src[y + r][x + c].
+// The plane is cut into square tiles that overlap by the kernel size (overlap-save); two real tiles
+// share one complex transform, one in the real part and one in the imaginary part.
+final class Correlator {
+
+	private final int kw, kh;
+
+	// tile side and the output block computed from each tile
+	private final int size;
+	private final int bw, bh;
+
+	private final FourierTransform fft;
+
+	// conjugate spectrum of the kernel padded to a tile
+	private final double[] kre, kim;
+
+	Correlator(final double[] kernel, final int kw, final int kh) {
+		this(kernel, kw, kh, Integer.MAX_VALUE);
+	}
+
+	// for planes of at most extent pixels wide and high, so no tile is larger than needed to hold one
+	Correlator(final double[] kernel, final int kw, final int kh, final int extent) {
+		this.kw = kw;
+		this.kh = kh;
+		this.size = tileSize(Math.max(kw, kh), extent);
+		this.bw = size - kw + 1;
+		this.bh = size - kh + 1;
+		this.fft = new FourierTransform(size);
+
+		kre = new double[size * size];
+		kim = new double[size * size];
+		for (int r = 0; r < kh; r++) {
+			System.arraycopy(kernel, r * kw, kre, r * size, kw);
+		}
+
+		fft.transform2D(kre, kim, new double[size], new double[size], false);
+		for (int p = 0; p < kim.length; p++) {
+			kim[p] = -kim[p];
+		}
+	}
+
+	// power of two that minimizes the transform work per output pixel
+	private static int tileSize(final int k, final int extent) {
+		int best = 0;
+		double cost = Double.MAX_VALUE;
+
+		final int first = Integer.highestOneBit(Math.max(1, k - 1)) << 1;
+		// capped before rounding up, an unbounded extent would overflow the shift
+		final int last = Math.max(first, Integer.highestOneBit(Math.max(1, Math.min(1024, extent) - 1)) << 1);
+
+		for (int t = first; t <= last; t <<= 1) {
+			final double block = t - k + 1;
+			final double c = (double) t * t * Math.log(t) / (block * block);
+			if (c < cost) {
+				cost = c;
+				best = t;
+			}
+		}
+
+		return best;
+	}
+
+	// rows of output computed by one tile
+	int blockHeight() {
+		return bh;
+	}
+
+	// valid correlation of a sw x sh plane, the (sw - kw + 1) x (sh - kh + 1) values written at the start
+	// of dst, so that the caller can pass the same array for every band of its plane
+	void correlate(final double[] src, final int sw, final int sh, final double[] dst) {
+		final int ow = Math.max(0, sw - kw + 1);
+		final int oh = Math.max(0, sh - kh + 1);
+
+		final int columns = (ow + bw - 1) / bw;
+		final int tiles = columns * ((oh + bh - 1) / bh);
+		final int pairs = (tiles + 1) / 2;
+
+		FilterExecutor.forEachRow(pairs, (from, to, scratch) -> {
+			final double[] re = scratch.doubles(size * size);
+			final double[] im = scratch.doubles(size * size);
+			final double[] columnRe = scratch.doubles(size);
+			final double[] columnIm = scratch.doubles(size);
+
+			for (int pair = from; pair < to; pair++) {
+				final int a = 2 * pair;
+				final int b = a + 1;
+
+				load(src, sw, sh, a % columns * bw, a / columns * bh, re);
+				if (b < tiles) {
+					load(src, sw, sh, b % columns * bw, b / columns * bh, im);
+				} else {
+					Arrays.fill(im, 0);
+				}
+
+				fft.transform2D(re, im, columnRe, columnIm, false);
+				for (int p = 0; p < re.length; p++) {
+					final double r = re[p] * kre[p] - im[p] * kim[p];
+					final double i = re[p] * kim[p] + im[p] * kre[p];
+					re[p] = r;
+					im[p] = i;
+				}
+				fft.transform2D(re, im, columnRe, columnIm, true);
+
+				store(re, a % columns * bw, a / columns * bh, dst, ow, oh);
+				if (b < tiles) {
+					store(im, b % columns * bw, b / columns * bh, dst, ow, oh);
+				}
+			}
+		});
+	}
+
+	// tile whose top-left corner is (x0, y0), zero outside the plane
+	private void load(final double[] src, final int sw, final int sh, final int x0, final int y0,
+			final double[] tile) {
+		final int w = Math.min(size, sw - x0);
+
+		for (int y = 0; y < size; y++) {
+			final int t = y * size;
+			if (y0 + y < sh) {
+				System.arraycopy(src, (y0 + y) * sw + x0, tile, t, w);
+				Arrays.fill(tile, t + w, t + size, 0);
+			} else {
+				Arrays.fill(tile, t, t + size, 0);
+			}
+		}
+	}
+
+	// valid block of an inverse-transformed tile, scaled by 1 / size^2
+	private void store(final double[] tile, final int x0, final int y0, final double[] dst, final int ow,
+			final int oh) {
+		final double scale = 1.0 / ((double) size * size);
+		final int w = Math.min(bw, ow - x0);
+		final int h = Math.min(bh, oh - y0);
+
+		for (int y = 0; y < h; y++) {
+			for (int x = 0, t = y * size, p = (y0 + y) * ow + x0; x < w; x++, t++, p++) {
+				dst[p] = tile[t] * scale;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package filters;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// runs the row loops of the filters, split in bands over a fork/join pool
+public final class FilterExecutor {
+
+	public interface Rows {
+		// processes the rows [from, to)
+		void run(int from, int to);
+	}
+
+	// progress and cancellation of the filters run by run(): their row loops count the rows done, and
+	// once it is cancelled no band starts anymore and the filter throws a CancellationException
+	public static class Job {
+		private final AtomicLong done = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private volatile boolean cancelled;
+
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		// rows processed so far
+		public long getDone() {
+			return done.get();
+		}
+
+		// rows of all the loops started so far, a filter making several passes adds each one as it starts
+		public long getTotal() {
+			return total.get();
+		}
+
+		private void check() {
+			if (cancelled) {
+				throw new CancellationException();
+			}
+		}
+	}
+
+	// smallest band handed to a worker
+	private static final int MIN_ROWS = 8;
+
+	// bands a loop is split in on a single thread when a job follows it
+	private static final int JOB_BANDS = 64;
+
+	private static final ThreadLocal<Job> JOB = new ThreadLocal<>();
+
+	// bands per worker, so uneven rows (image borders, early exits) still balance
+	private static final int BANDS_PER_THREAD = 4;
+
+	private static int parallelism = Integer.getInteger("filters.parallelism",
+			Runtime.getRuntime().availableProcessors());
+	private static boolean serial = Boolean.getBoolean("filters.serial");
+	private static ForkJoinPool pool;
+
+	private FilterExecutor() {
+	}
+
+	public static synchronized int getParallelism() {
+		return parallelism;
+	}
+
+	public static synchronized void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			parallelism = 1;
+		}
+
+		if (FilterExecutor.parallelism != parallelism) {
+			FilterExecutor.parallelism = parallelism;
+
+			if (pool != null) {
+				pool.shutdown();
+				pool = null;
+			}
+		}
+	}
+
+	public static synchronized boolean isSerial() {
+		return serial;
+	}
+
+	// forces every filter to run on the calling thread
+	public static synchronized void setSerial(boolean serial) {
+		FilterExecutor.serial = serial;
+	}
+
+	// whether the image-image filters run on the Vector API implementation of PixelOps
+	public static boolean isVectorized() {
+		return PixelOps.get().getClass() != ScalarPixelOps.class;
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (serial || parallelism == 1) {
+			return null;
+		}
+
+		if (pool == null) {
+			pool = new ForkJoinPool(parallelism);
+		}
+
+		return pool;
+	}
+
+	// runs a filter on the calling thread as part of a job
+	public static <T> T run(final Job job, final Supplier<T> filter) {
+		final Job previous = JOB.get();
+		JOB.set(job);
+		try {
+			return filter.get();
+		} finally {
+			JOB.set(previous);
+		}
+	}
+
+	// every row is computed by exactly one band, so the output does not depend on the split
+	public static void forEachRow(final int rows, final Rows task) {
+		final ForkJoinPool pool = getPool();
+		final Job job = JOB.get();
+
+		if (job != null) {
+			job.check();
+			job.total.addAndGet(rows);
+		}
+
+		if (pool == null || rows <= MIN_ROWS) {
+			if (job == null) {
+				task.run(0, rows);
+				return;
+			}
+
+			// in bands anyway, for the progress and to stop soon once cancelled
+			final int grain = Math.max(MIN_ROWS, rows / JOB_BANDS);
+			for (int from = 0; from < rows; from += grain) {
+				job.check();
+				task.run(from, Math.min(rows, from + grain));
+				job.done.addAndGet(Math.min(rows, from + grain) - from);
+			}
+			return;
+		}
+
+		final int grain = Math.max(MIN_ROWS, rows / (pool.getParallelism() * BANDS_PER_THREAD));
+		final Band band = new Band(task, job, 0, rows, grain);
+
+		if (ForkJoinTask.getPool() == pool) {
+			band.invoke();
+		} else {
+			pool.invoke(band);
+		}
+	}
+
+	// same, each band with the scratch buffers of the thread that runs it
+	static void forEachRow(final int rows, final Scratch.Rows task) {
+		forEachRow(rows, (from, to) -> {
+			final Scratch scratch = Scratch.acquire();
+			try {
+				task.run(from, to, scratch);
+			} finally {
+				scratch.release();
+			}
+		});
+	}
+
+	@SuppressWarnings("serial")
+	private static class Band extends RecursiveAction {
+		private final Rows task;
+		private final Job job;
+		private final int from, to, grain;
+
+		public Band(Rows task, Job job, int from, int to, int grain) {
+			this.task = task;
+			this.job = job;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				if (job == null) {
+					task.run(from, to);
+					return;
+				}
+
+				// the job follows the band to the worker thread, for the loops the filter nests in it
+				job.check();
+				run(job, () -> {
+					task.run(from, to);
+					return null;
+				});
+				job.done.addAndGet(to - from);
+				return;
+			}
+
+			final int middle = (from + to) >>> 1;
+			invokeAll(new Band(task, job, from, middle, grain), new Band(task, job, middle, to, grain));
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package filters;
+
+// In-place radix-2 complex FFT of a power-of-two length, on separate real and imaginary arrays.
+final class FourierTransform {
+
+	private final int n;
+
+	// bit-reversed index of every position and the twiddle factors e^(2 pi i k / n), k < n / 2
+	private final int[] reverse;
+	private final double[] cos;
+	private final double[] sin;
+
+	FourierTransform(final int n) {
+		if (n < 1 || Integer.bitCount(n) != 1) {
+			throw new IllegalArgumentException("Length must be a power of two: " + n);
+		}
+
+		this.n = n;
+		this.reverse = new int[n];
+		this.cos = new double[n / 2];
+		this.sin = new double[n / 2];
+
+		final int bits = Integer.numberOfTrailingZeros(n);
+		for (int i = 0; i < n; i++) {
+			reverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+		}
+
+		for (int k = 0; k < n / 2; k++) {
+			cos[k] = Math.cos(2 * Math.PI * k / n);
+			sin[k] = Math.sin(2 * Math.PI * k / n);
+		}
+	}
+
+	int length() {
+		return n;
+	}
+
+	// transforms the n values starting at offset; the inverse is not scaled by 1 / n
+	void transform(final double[] re, final double[] im, final int offset, final boolean inverse) {
+		for (int i = 0; i < n; i++) {
+			final int j = reverse[i];
+			if (i < j) {
+				final double tr = re[offset + i];
+				re[offset + i] = re[offset + j];
+				re[offset + j] = tr;
+
+				final double ti = im[offset + i];
+				im[offset + i] = im[offset + j];
+				im[offset + j] = ti;
+			}
+		}
+
+		final double sign = inverse ? 1 : -1;
+
+		for (int size = 2; size <= n; size <<= 1) {
+			final int half = size >> 1;
+			final int step = n / size;
+
+			for (int start = offset; start < offset + n; start += size) {
+				for (int k = 0; k < half; k++) {
+					final double c = cos[k * step];
+					final double s = sign * sin[k * step];
+
+					final int a = start + k;
+					final int b = a + half;
+
+					final double tr = re[b] * c - im[b] * s;
+					final double ti = re[b] * s + im[b] * c;
+
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+	}
+
+	// transforms an n x n block stored row after row: the rows, then the columns through the two buffers
+	void transform2D(final double[] re, final double[] im, final double[] columnRe, final double[] columnIm,
+			final boolean inverse) {
+		for (int y = 0; y < n; y++) {
+			transform(re, im, y * n, inverse);
+		}
+
+		for (int x = 0; x < n; x++) {
+			for (int y = 0, p = x; y < n; y++, p += n) {
+				columnRe[y] = re[p];
+				columnIm[y] = im[p];
+			}
+
+			transform(columnRe, columnIm, 0, inverse);
+
+			for (int y = 0, p = x; y < n; y++, p += n) {
+				re[p] = columnRe[y];
+				im[p] = columnIm[y];
+			}
+		}
+	}
+
+}
@@ -1,15 +1,91 @@
 package filters;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.lang.reflect.Array;
 
 public class GeometricFilter extends BaseFilter {
 
+	public static final int NEAREST = 0;
+	public static final int BILINEAR = 1;
+	public static final int BICUBIC = 2;
+	public static final int BOX = 3;
+	public static final int LANCZOS = 4;
+
+	// Catmull-Rom weights of the neighbours at -1, 0, 1 and 2 for every fraction f / 256, in 10-bit
+	// fixed point summing to 1024
+	private static final int[] CUBIC = new int[4 * 257];
+
+	static {
+		for (int f = 0; f <= 256; f++) {
+			final double t = f / 256.0;
+			final int w0 = (int) Math.round(((-0.5 * t + 1) * t - 0.5) * t * 1024);
+			final int w1 = (int) Math.round(((1.5 * t - 2.5) * t * t + 1) * 1024);
+			final int w2 = (int) Math.round(((-1.5 * t + 2) * t + 0.5) * t * 1024);
+
+			CUBIC[4 * f] = w0;
+			CUBIC[4 * f + 1] = w1;
+			CUBIC[4 * f + 2] = w2;
+			CUBIC[4 * f + 3] = 1024 - w0 - w1 - w2;
+		}
+	}
+
+	// side of the square tiles the right-angle rotations are copied by, so that the rows read and the rows
+	// written by a tile both stay in cache
+	private static final int BLOCK = 64;
+
+	// what the nearest-neighbour scale adds before truncating, so that x / scale landing a rounding error
+	// below a whole pixel still picks it
+	static final double EPSILON = 1e-9;
+
+	private int interpolation = NEAREST;
+
+	// filter of scale: NEAREST, BOX, BILINEAR, BICUBIC or LANCZOS
+	private int resampling = NEAREST;
+
+	// whether the output of rotate grows to hold the whole rotated image
+	private boolean expand = false;
+
 	public GeometricFilter(BufferedImage image) {
 		super(image);
 	}
 
+	public int getInterpolation() {
+		return interpolation;
+	}
+
+	public void setInterpolation(final int interpolation) {
+		if (interpolation != NEAREST && interpolation != BILINEAR && interpolation != BICUBIC) {
+			throw new IllegalArgumentException("Unknown interpolation: " + interpolation);
+		}
+
+		this.interpolation = interpolation;
+	}
+
+	public int getResampling() {
+		return resampling;
+	}
+
+	public void setResampling(final int resampling) {
+		if (resampling != NEAREST && resampling != BOX && resampling != BILINEAR && resampling != BICUBIC
+				&& resampling != LANCZOS) {
+			throw new IllegalArgumentException("Unknown resampling: " + resampling);
+		}
+
+		this.resampling = resampling;
+	}
+
+	public boolean isExpand() {
+		return expand;
+	}
+
+	public void setExpand(final boolean expand) {
+		this.expand = expand;
+	}
+
 	public BufferedImage translate(int x, int y) {
-		newimage = new BufferedImage(width, height, type);
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
 
 		int sx = clamp(x, 0, x);
 		int sy = clamp(y, 0, y);
@@ -19,100 +95,344 @@ public class GeometricFilter extends BaseFilter {
 
 		for (int j = sy; j < height + fy; j++) {
 			for (int i = sx; i < width + fx; i++) {
-				int px = image.getRGB(i - x, j - y);
-				newimage.setRGB(i, j, px);
+				int px = src[(j - y) * width + (i - x)];
+				dst[j * width + i] = px;
 			}
 		}
 
+		newimage = createImage(dst);
+
 		return newimage;
 	}
 
-	public BufferedImage rotate(double angle) {
-		newimage = new BufferedImage(width, height, type);
+	// rotation about the center of the image, clockwise for a positive angle in radians. Every output
+	// pixel is mapped back to its source position through the inverse rotation, evaluated by affine()
+	// directly for each pixel from its row and column, with the sine and cosine computed once.
+	// Pixels that come from outside the image are 0.
+	public BufferedImage rotate(final double angle) {
+		// right angles that give the same size as the general path are exact copies
+		final double quarters = angle / (Math.PI / 2);
+		final long quarter = Math.round(quarters);
+		if (Math.abs(quarters - quarter) < 1e-12 && (expand || width == height || quarter % 2 == 0)) {
+			switch (Math.floorMod(quarter, 4)) {
+			case 0:
+				return permute(width, height, 0, 1, width);
+			case 1:
+				return rotate90();
+			case 2:
+				return rotate180();
+			default:
+				return rotate270();
+			}
+		}
 
-		final int x0 = width / 2;
-		final int y0 = height / 2;
+		final double cos = Math.cos(angle);
+		final double sin = Math.sin(angle);
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
+		// the bounding box of the rotated image, rounded down when it is within rounding error
+		final int w = expand ? (int) Math.ceil(Math.abs(width * cos) + Math.abs(height * sin) - 1e-9) : width;
+		final int h = expand ? (int) Math.ceil(Math.abs(width * sin) + Math.abs(height * cos) - 1e-9) : height;
 
-				long x = Math.round(Math.cos(angle) * (i - x0) - Math.sin(angle) * (j - y0) + x0);
-				long y = Math.round(Math.sin(angle) * (i - x0) + Math.cos(angle) * (j - y0) + y0);
+		// centers of the source and of the output
+		final double cx = (width - 1) / 2.0;
+		final double cy = (height - 1) / 2.0;
+		final double ox = (w - 1) / 2.0;
+		final double oy = (h - 1) / 2.0;
 
-				if ((x > 0 && y > 0) && (x < width && y < height)) {
-					newimage.setRGB((int) x, (int) y, px);
-				}
+		return affine(new double[] { cos, sin, cx - cos * ox - sin * oy, -sin, cos, cy + sin * ox - cos * oy }, w, h);
+	}
+
+	// w x h image whose pixel (x, y) is the source at (m[0] x + m[1] y + m[2], m[3] x + m[4] y + m[5]),
+	// through the current interpolation. Maps that only move whole pixels inside the image are copied
+	// exactly, by permute().
+	BufferedImage affine(final double[] m, final int w, final int h) {
+		final long[] exact = new long[6];
+		boolean copy = true;
+		for (int k = 0; k < 6; k++) {
+			exact[k] = Math.round(m[k]);
+			copy &= Math.abs(m[k] - exact[k]) < 1e-9;
+		}
+
+		if (copy && Math.abs(exact[0] * exact[4] - exact[1] * exact[3]) == 1) {
+			// all the output maps inside the image when its four corners do
+			boolean inside = true;
+			for (int c = 0; c < 4; c++) {
+				final long x = (c & 1) * (w - 1L), y = (c >> 1) * (h - 1L);
+				final long sx = exact[0] * x + exact[1] * y + exact[2];
+				final long sy = exact[3] * x + exact[4] * y + exact[5];
+				inside &= sx >= 0 && sy >= 0 && sx < width && sy < height;
+			}
+
+			if (inside) {
+				return permute(w, h, (int) (exact[5] * width + exact[2]), (int) (exact[3] * width + exact[0]),
+						(int) (exact[4] * width + exact[1]));
 			}
 		}
 
+		final int[] src = getPixels();
+		final int[] dst = new int[w * h];
+
+		FilterExecutor.forEachRow(h, (from, to) -> {
+			for (int j = from; j < to; j++) {
+				// source position of the first pixel of the row
+				final double x = m[1] * j + m[2];
+				final double y = m[4] * j + m[5];
+
+				for (int i = 0, p = j * w; i < w; i++, p++) {
+					dst[p] = sample(src, x + m[0] * i, y + m[3] * i);
+				}
+			}
+		});
+
+		newimage = createImage(dst, w, h);
+
 		return newimage;
 	}
 
-	public BufferedImage scale(double scale) {
-		int newwidth = (int) Math.ceil(width * scale);
-		int hewheight = (int) Math.ceil(height * scale);
+	// the image at a source position, through the current interpolation
+	private int sample(final int[] src, final double x, final double y) {
+		switch (interpolation) {
+		case BILINEAR:
+			return bilinear(src, x, y);
+		case BICUBIC:
+			return bicubic(src, x, y);
+		default:
+			return pixel(src, (int) Math.floor(x + 0.5), (int) Math.floor(y + 0.5));
+		}
+	}
 
-		newimage = new BufferedImage(newwidth, hewheight, type);
+	// 0 outside the image
+	private int pixel(final int[] src, final int x, final int y) {
+		return x >= 0 && y >= 0 && x < width && y < height ? src[y * width + x] : 0;
+	}
 
-		if (scale < 1) {
-			scale = 1 / scale;
+	// the four neighbours weighted by 8-bit fractions, each channel alpha included
+	private int bilinear(final int[] src, final double x, final double y) {
+		final int x0 = (int) Math.floor(x);
+		final int y0 = (int) Math.floor(y);
 
-			int x = 0, y = 0;
-			for (int j = 0; j < height; j += scale) {
-				x = 0;
-				for (int i = 0; i < width; i += scale) {
-					int px = image.getRGB(i, j);
-					newimage.setRGB(x, y, px);
-					x++;
-				}
-				y++;
-			}
+		if (x0 < -1 || y0 < -1 || x0 >= width || y0 >= height) {
+			return 0;
+		}
+
+		// rounded, so positions a hair away from a pixel still land on it
+		final int fx = (int) Math.round((x - x0) * 256);
+		final int fy = (int) Math.round((y - y0) * 256);
+
+		final int p00, p10, p01, p11;
+		if (x0 >= 0 && y0 >= 0 && x0 + 1 < width && y0 + 1 < height) {
+			final int p = y0 * width + x0;
+			p00 = src[p];
+			p10 = src[p + 1];
+			p01 = src[p + width];
+			p11 = src[p + width + 1];
 		} else {
-			for (int j = 0; j < height; j++) {
-				for (int i = 0; i < width; i++) {
-					int px = image.getRGB(i, j);
+			p00 = pixel(src, x0, y0);
+			p10 = pixel(src, x0 + 1, y0);
+			p01 = pixel(src, x0, y0 + 1);
+			p11 = pixel(src, x0 + 1, y0 + 1);
+		}
 
-					for (int y = 0; y < scale; y++) {
-						for (int x = 0; x < scale; x++) {
-							newimage.setRGB((i * (int) scale) + x, (j * (int) scale) + y, px);
-						}
-					}
-				}
+		int px = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			final int top = ((p00 >>> shift) & 0xFF) * (256 - fx) + ((p10 >>> shift) & 0xFF) * fx;
+			final int bottom = ((p01 >>> shift) & 0xFF) * (256 - fx) + ((p11 >>> shift) & 0xFF) * fx;
+			px |= ((top * (256 - fy) + bottom * fy + 32768) >>> 16) << shift;
+		}
+
+		return px;
+	}
+
+	// the 4 x 4 neighbours weighted by the Catmull-Rom spline, the fractions rounded to 8 bits as for
+	// bilinear, each channel alpha included
+	private int bicubic(final int[] src, final double x, final double y) {
+		final int x0 = (int) Math.floor(x);
+		final int y0 = (int) Math.floor(y);
+
+		if (x0 < -2 || y0 < -2 || x0 > width || y0 > height) {
+			return 0;
+		}
+
+		final int fx = 4 * (int) Math.round((x - x0) * 256);
+		final int wx0 = CUBIC[fx], wx1 = CUBIC[fx + 1], wx2 = CUBIC[fx + 2], wx3 = CUBIC[fx + 3];
+
+		final int fy = 4 * (int) Math.round((y - y0) * 256);
+		final int wy0 = CUBIC[fy], wy1 = CUBIC[fy + 1], wy2 = CUBIC[fy + 2], wy3 = CUBIC[fy + 3];
+
+		final boolean inside = x0 >= 1 && y0 >= 1 && x0 + 2 < width && y0 + 2 < height;
+
+		int a = 0, r = 0, g = 0, b = 0;
+		for (int k = 0; k < 4; k++) {
+			final int row = y0 + k - 1;
+			final int wy = k == 0 ? wy0 : k == 1 ? wy1 : k == 2 ? wy2 : wy3;
+
+			final int p0, p1, p2, p3;
+			if (inside) {
+				final int p = row * width + x0 - 1;
+				p0 = src[p];
+				p1 = src[p + 1];
+				p2 = src[p + 2];
+				p3 = src[p + 3];
+			} else {
+				p0 = pixel(src, x0 - 1, row);
+				p1 = pixel(src, x0, row);
+				p2 = pixel(src, x0 + 1, row);
+				p3 = pixel(src, x0 + 2, row);
 			}
+
+			a += wy * (wx0 * (p0 >>> 24) + wx1 * (p1 >>> 24) + wx2 * (p2 >>> 24) + wx3 * (p3 >>> 24));
+			r += wy * (wx0 * ((p0 >> 16) & 0xFF) + wx1 * ((p1 >> 16) & 0xFF) + wx2 * ((p2 >> 16) & 0xFF)
+					+ wx3 * ((p3 >> 16) & 0xFF));
+			g += wy * (wx0 * ((p0 >> 8) & 0xFF) + wx1 * ((p1 >> 8) & 0xFF) + wx2 * ((p2 >> 8) & 0xFF)
+					+ wx3 * ((p3 >> 8) & 0xFF));
+			b += wy * (wx0 * (p0 & 0xFF) + wx1 * (p1 & 0xFF) + wx2 * (p2 & 0xFF) + wx3 * (p3 & 0xFF));
 		}
 
-		return newimage;
+		return clamp((a + (1 << 19)) >> 20) << 24 | clamp((r + (1 << 19)) >> 20) << 16
+				| clamp((g + (1 << 19)) >> 20) << 8 | clamp((b + (1 << 19)) >> 20);
 	}
 
-	public BufferedImage flipHorizontal() {
-		newimage = new BufferedImage(width, height, type);
+	public BufferedImage scale(final double scale) {
+		if (!(scale > 0)) {
+			throw new IllegalArgumentException("Invalid scale: " + scale);
+		}
+
+		final int newwidth = Math.max(1, (int) Math.ceil(width * scale));
+		final int newheight = Math.max(1, (int) Math.ceil(height * scale));
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
+		final int[] src = getPixels();
+		final int[] dst = new int[newwidth * newheight];
 
-				int y = height - j - 1;
-				newimage.setRGB(i, y, px);
+		if (resampling == NEAREST) {
+			final int[] columns = new int[newwidth];
+			for (int x = 0; x < newwidth; x++) {
+				columns[x] = Math.min(width - 1, (int) (x / scale + EPSILON));
 			}
+
+			FilterExecutor.forEachRow(newheight, (from, to) -> {
+				for (int y = from; y < to; y++) {
+					final int row = Math.min(height - 1, (int) (y / scale + EPSILON)) * width;
+
+					for (int x = 0, p = y * newwidth; x < newwidth; x++, p++) {
+						dst[p] = src[row + columns[x]];
+					}
+				}
+			});
+		} else {
+			// separable: every source row along x, then the output rows along y
+			final Resampler horizontal = new Resampler(resampling, width, newwidth, scale);
+			final Resampler vertical = new Resampler(resampling, height, newheight, scale);
+
+			final int[] tmp = new int[height * newwidth];
+
+			FilterExecutor.forEachRow(height, (from, to) -> horizontal.horizontal(src, width, tmp, from, to));
+			FilterExecutor.forEachRow(newheight, (from, to) -> vertical.vertical(tmp, newwidth, dst, from, to));
 		}
 
+		newimage = createImage(dst, newwidth, newheight);
+
 		return newimage;
 	}
 
+	// clockwise
+	public BufferedImage rotate90() {
+		return permute(height, width, (height - 1) * width, -width, 1);
+	}
+
+	public BufferedImage rotate180() {
+		return permute(width, height, height * width - 1, -1, -width);
+	}
+
+	// counterclockwise
+	public BufferedImage rotate270() {
+		return permute(height, width, width - 1, width, -1);
+	}
+
+	// mirrors the rows: the top row becomes the bottom one
+	public BufferedImage flipHorizontal() {
+		return permute(width, height, (height - 1) * width, 1, -width);
+	}
+
+	// mirrors the columns: the left column becomes the right one
 	public BufferedImage flipVertical() {
-		newimage = new BufferedImage(width, height, type);
+		return permute(width, height, width - 1, -1, width);
+	}
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
+	// w x h image whose pixel (x, y) is the source pixel origin + x * dx + y * dy, in row-major order.
+	// Pixels are moved as the raw data elements of the raster, so any image type comes out unchanged.
+	private BufferedImage permute(final int w, final int h, final int origin, final int dx, final int dy) {
+		final WritableRaster raster = image.getRaster();
+		final int n = raster.getNumDataElements();
 
-				int x = width - i - 1;
-				newimage.setRGB(x, j, px);
-			}
+		final Object src = raster.getDataElements(0, 0, width, height, null);
+		final Object out = Array.newInstance(src.getClass().getComponentType(), w * h * n);
+
+		if (dx == 1 || dx == -1) {
+			// rows to rows, copied or reversed
+			FilterExecutor.forEachRow(h, (from, to) -> {
+				for (int y = from; y < to; y++) {
+					rows(src, out, n, origin + y * dy, dx, y * w, w);
+				}
+			});
+		} else {
+			// columns to rows, tile by tile
+			FilterExecutor.forEachRow(h, (from, to) -> {
+				for (int y0 = from; y0 < to; y0 += BLOCK) {
+					final int ye = Math.min(to, y0 + BLOCK);
+
+					for (int x0 = 0; x0 < w; x0 += BLOCK) {
+						final int xe = Math.min(w, x0 + BLOCK);
+
+						for (int y = y0; y < ye; y++) {
+							columns(src, out, n, origin + x0 * dx + y * dy, dx, y * w + x0, xe - x0);
+						}
+					}
+				}
+			});
 		}
 
+		final WritableRaster result = raster.createCompatibleWritableRaster(w, h);
+		result.setDataElements(0, 0, w, h, out);
+
+		newimage = new BufferedImage(image.getColorModel(), result, image.isAlphaPremultiplied(), null);
+
 		return newimage;
 	}
 
+	// count pixels from s stepping by ds (1 or -1) to d stepping by 1, n data elements each
+	private static void rows(final Object src, final Object dst, final int n, final int s, final int ds, final int d,
+			final int count) {
+		if (ds == 1) {
+			System.arraycopy(src, s * n, dst, d * n, count * n);
+		} else {
+			columns(src, dst, n, s, ds, d, count);
+		}
+	}
+
+	// count pixels from s stepping by ds to d stepping by 1, n data elements each
+	private static void columns(final Object src, final Object dst, final int n, final int s, final int ds,
+			final int d, final int count) {
+		if (src instanceof int[] && n == 1) {
+			final int[] in = (int[]) src;
+			final int[] out = (int[]) dst;
+
+			for (int i = 0, p = s; i < count; i++, p += ds) {
+				out[d + i] = in[p];
+			}
+		} else if (src instanceof byte[]) {
+			final byte[] in = (byte[]) src;
+			final byte[] out = (byte[]) dst;
+
+			for (int i = 0, p = s * n, q = d * n; i < count; i++, p += ds * n) {
+				for (int k = 0; k < n; k++, q++) {
+					out[q] = in[p + k];
+				}
+			}
+		} else {
+			for (int i = 0, p = s; i < count; i++, p += ds) {
+				System.arraycopy(src, p * n, dst, (d + i) * n, n);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,201 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+// Chain of geometric operations on an image, composed into a single affine map and resampled once,
+// when apply() is called. Every step samples and sizes the output as the GeometricFilter method of the
+// same name; since the output is always read from the source, what a step moves out of
+// the frame and a later step brings back is kept instead of lost.
+public class GeometricPipeline {
+
+	private final BufferedImage source;
+
+	// source to output coordinates: x' = m[0] x + m[1] y + m[2], y' = m[3] x + m[4] y + m[5]
+	private final double[] matrix;
+
+	// size of the output after the steps so far
+	private int width, height;
+
+	private int interpolation = GeometricFilter.NEAREST;
+
+	// whether rotate grows the output to hold the whole rotated image
+	private boolean expand = false;
+
+	private final List<String> steps = new ArrayList<>();
+
+	public GeometricPipeline(final BufferedImage source) {
+		this.source = source;
+
+		matrix = new double[] { 1, 0, 0, 0, 1, 0 };
+		width = source.getWidth();
+		height = source.getHeight();
+	}
+
+	// same source and steps, to branch from
+	public GeometricPipeline(final GeometricPipeline pipeline) {
+		source = pipeline.source;
+		matrix = pipeline.matrix.clone();
+		width = pipeline.width;
+		height = pipeline.height;
+		interpolation = pipeline.interpolation;
+		expand = pipeline.expand;
+		steps.addAll(pipeline.steps);
+	}
+
+	public BufferedImage getSource() {
+		return source;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getInterpolation() {
+		return interpolation;
+	}
+
+	// of the single resampling, so it applies to all the steps
+	public void setInterpolation(final int interpolation) {
+		if (interpolation != GeometricFilter.NEAREST && interpolation != GeometricFilter.BILINEAR
+				&& interpolation != GeometricFilter.BICUBIC) {
+			throw new IllegalArgumentException("Unknown interpolation: " + interpolation);
+		}
+
+		this.interpolation = interpolation;
+	}
+
+	public boolean isExpand() {
+		return expand;
+	}
+
+	// for the rotate steps added from now on
+	public void setExpand(final boolean expand) {
+		this.expand = expand;
+	}
+
+	public GeometricPipeline translate(final int x, final int y) {
+		return then(1, 0, x, 0, 1, y, width, height, "translate " + x + "," + y);
+	}
+
+	public GeometricPipeline rotate(final double angle) {
+		final double cos = Math.cos(angle);
+		final double sin = Math.sin(angle);
+
+		final int w = expand ? (int) Math.ceil(Math.abs(width * cos) + Math.abs(height * sin) - 1e-9) : width;
+		final int h = expand ? (int) Math.ceil(Math.abs(width * sin) + Math.abs(height * cos) - 1e-9) : height;
+
+		// about the centers of the current and of the new output
+		final double cx = (width - 1) / 2.0;
+		final double cy = (height - 1) / 2.0;
+		final double ox = (w - 1) / 2.0;
+		final double oy = (h - 1) / 2.0;
+
+		return then(cos, -sin, ox - cos * cx + sin * cy, sin, cos, oy - sin * cx - cos * cy, w, h,
+				"rotate " + Math.toDegrees(angle));
+	}
+
+	public GeometricPipeline scale(final double scale) {
+		if (!(scale > 0)) {
+			throw new IllegalArgumentException("Invalid scale: " + scale);
+		}
+
+		final int w = Math.max(1, (int) Math.ceil(width * scale));
+		final int h = Math.max(1, (int) Math.ceil(height * scale));
+		// output pixel x comes from x / scale - 0.5 + EPSILON in the source, which the nearest neighbour
+		// rounds to the pixel GeometricFilter.scale picks, (int) (x / scale + EPSILON)
+		final double offset = scale * (0.5 - GeometricFilter.EPSILON);
+
+		return then(scale, 0, offset, 0, scale, offset, w, h, "scale " + scale);
+	}
+
+	// clockwise
+	public GeometricPipeline rotate90() {
+		return then(0, -1, height - 1, 1, 0, 0, height, width, "rotate90");
+	}
+
+	public GeometricPipeline rotate180() {
+		return then(-1, 0, width - 1, 0, -1, height - 1, width, height, "rotate180");
+	}
+
+	// counterclockwise
+	public GeometricPipeline rotate270() {
+		return then(0, 1, 0, -1, 0, width - 1, height, width, "rotate270");
+	}
+
+	// mirrors the rows, as GeometricFilter.flipHorizontal
+	public GeometricPipeline flipHorizontal() {
+		return then(1, 0, 0, 0, -1, height - 1, width, height, "flipHorizontal");
+	}
+
+	// mirrors the columns, as GeometricFilter.flipVertical
+	public GeometricPipeline flipVertical() {
+		return then(-1, 0, width - 1, 0, 1, 0, width, height, "flipVertical");
+	}
+
+	// composes the step x' = a x + b y + c, y' = d x + e y + f after the current map
+	private GeometricPipeline then(final double a, final double b, final double c, final double d, final double e,
+			final double f, final int w, final int h, final String step) {
+		final double[] m = matrix;
+
+		final double m0 = a * m[0] + b * m[3];
+		final double m1 = a * m[1] + b * m[4];
+		final double m2 = a * m[2] + b * m[5] + c;
+		final double m3 = d * m[0] + e * m[3];
+		final double m4 = d * m[1] + e * m[4];
+		final double m5 = d * m[2] + e * m[5] + f;
+
+		m[0] = m0;
+		m[1] = m1;
+		m[2] = m2;
+		m[3] = m3;
+		m[4] = m4;
+		m[5] = m5;
+
+		width = w;
+		height = h;
+		steps.add(step);
+
+		return this;
+	}
+
+	public boolean isEmpty() {
+		return steps.isEmpty();
+	}
+
+	public int size() {
+		return steps.size();
+	}
+
+	public List<String> getSteps() {
+		return new ArrayList<>(steps);
+	}
+
+	// the source through all the steps, resampled once
+	public BufferedImage apply() {
+		final double[] m = matrix;
+		final double det = m[0] * m[4] - m[1] * m[3];
+
+		// output to source coordinates
+		final double a = m[4] / det;
+		final double b = -m[1] / det;
+		final double d = -m[3] / det;
+		final double e = m[0] / det;
+
+		final GeometricFilter filter = new GeometricFilter(source);
+		filter.setInterpolation(interpolation);
+
+		return filter.affine(new double[] { a, b, -a * m[2] - b * m[5], d, e, -d * m[2] - e * m[5] }, width, height);
+	}
+
+	@Override
+	public String toString() {
+		return String.join(" > ", steps);
+	}
+
+}
@@ -4,59 +4,98 @@ import java.awt.image.BufferedImage;
 
 public class GrayscaleFilter extends BaseFilter {
 
+	// channel weights times every channel value, so the per-pixel sums match the inline float math exactly
+	private static final float[] SDTV_R = weights(0.299f), SDTV_G = weights(0.587f), SDTV_B = weights(0.114f);
+	private static final float[] HDTV_R = weights(0.2126f), HDTV_G = weights(0.7152f), HDTV_B = weights(0.0722f);
+
 	public GrayscaleFilter(BufferedImage image) {
 		super(image);
 	}
 
+	private static float[] weights(final float weight) {
+		final float[] values = new float[256];
+		for (int v = 0; v < 256; v++) {
+			values[v] = weight * v;
+		}
+
+		return values;
+	}
+
+	static int average(final int px) {
+		return (getRed(px) + getGreen(px) + getBlue(px)) / 3;
+	}
+
+	// ITU-R Recommendation BT.601
+	static int sdtv(final int px) {
+		return (int) (SDTV_R[getRed(px)] + SDTV_G[getGreen(px)] + SDTV_B[getBlue(px)]);
+	}
+
+	// ITU-R Recommendation BT.709
+	static int hdtv(final int px) {
+		return Math.round(HDTV_R[getRed(px)] + HDTV_G[getGreen(px)] + HDTV_B[getBlue(px)]);
+	}
+
 	public BufferedImage average() {
-		newimage = new BufferedImage(width, height, type);
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
+		forEachRow((from, to) -> {
+			for (int j = from; j < to; j++) {
+				for (int i = 0, p = j * width; i < width; i++, p++) {
+					int px = src[p];
 
-				int[] rgb = getRGBComponents(px);
-				int c = (rgb[R] + rgb[G] + rgb[B]) / 3;
+					int c = average(px);
 
-				newimage.setRGB(i, j, colorRGB(c, c, c));
+					dst[p] = colorRGB(c, c, c);
+				}
 			}
-		}
+		});
+
+		newimage = createImage(dst);
 
 		return newimage;
 	}
 
 	// ITU-R Recommendation BT.601
 	public BufferedImage sdtv() {
-		newimage = new BufferedImage(width, height, type);
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
+		forEachRow((from, to) -> {
+			for (int j = from; j < to; j++) {
+				for (int i = 0, p = j * width; i < width; i++, p++) {
+					int px = src[p];
 
-				int[] rgb = getRGBComponents(px);
-				int c = (int) (0.299f * rgb[R] + 0.587f * rgb[G] + 0.114f * rgb[B]);
+					int c = sdtv(px);
 
-				newimage.setRGB(i, j, colorRGB(c, c, c));
+					dst[p] = colorRGB(c, c, c);
+				}
 			}
-		}
+		});
+
+		newimage = createImage(dst);
 
 		return newimage;
 	}
 
 	// ITU-R Recommendation BT.709
 	public BufferedImage hdtv() {
-		newimage = new BufferedImage(width, height, type);
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
+		forEachRow((from, to) -> {
+			for (int j = from; j < to; j++) {
+				for (int i = 0, p = j * width; i < width; i++, p++) {
+					int px = src[p];
 
-				int[] rgb = getRGBComponents(px);
-				int c = Math.round((0.2126f * rgb[R] + 0.7152f * rgb[G] + 0.0722f * rgb[B]));
+					int c = hdtv(px);
 
-				newimage.setRGB(i, j, colorRGB(c, c, c));
+					dst[p] = colorRGB(c, c, c);
+				}
 			}
-		}
+		});
+
+		newimage = createImage(dst);
 
 		return newimage;
 	}
@@ -66,31 +105,56 @@ public class GrayscaleFilter extends BaseFilter {
 	}
 
 	public BufferedImage threshold(int min, int max) {
-		newimage = hdtv();
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
 
 		final int BLACK = colorRGB(0, 0, 0);
 		final int WHITE = colorRGB(255, 255, 255);
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = newimage.getRGB(i, j) & 0xFF;
+		// output for every gray level, compared as it reads back from an image of the source type, where
+		// hdtv() writes it: on the types that do not hold every pixel (isExact) that is another level
+		final int[] gray = isExact(image) ? null : readBack();
+		final int[] levels = new int[256];
+		for (int c = 0; c < levels.length; c++) {
+			final int v = gray == null ? c : gray[c];
+			levels[c] = (v >= min && v <= max) ? BLACK : WHITE;
+		}
 
-				newimage.setRGB(i, j, (px >= min && px <= max) ? BLACK : WHITE);
+		forEachRow((from, to) -> {
+			for (int p = from * width; p < to * width; p++) {
+				dst[p] = levels[hdtv(src[p])];
 			}
-		}
+		});
+
+		newimage = createImage(dst);
 
 		return newimage;
 	}
 
+	// blue channel of every gray level written to and read back from an image of the source type
+	private int[] readBack() {
+		final int[] data = new int[256];
+		for (int c = 0; c < data.length; c++) {
+			data[c] = colorRGB(c, c, c);
+		}
+
+		final int[] gray = getPixels(createImage(data, data.length, 1));
+		for (int c = 0; c < gray.length; c++) {
+			gray[c] &= 0xFF;
+		}
+
+		return gray;
+	}
+
 	public int[] histogram() {
+		final int[] src = getPixels();
 		int[] hist = new int[256];
 
 		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				int px = image.getRGB(i, j);
+			for (int i = 0, p = j * width; i < width; i++, p++) {
+				int px = src[p];
 
-				int[] rgb = getRGBComponents(px);
-				int c = (int) (0.299f * rgb[R] + 0.587f * rgb[G] + 0.114f * rgb[B]);
+				int c = sdtv(px);
 
 				hist[c]++;
 			}
@@ -99,7 +163,22 @@ public class GrayscaleFilter extends BaseFilter {
 		return hist;
 	}
 
+	// SDTV gray level of every pixel, the values counted by the histograms
+	int[] levels() {
+		final int[] src = getPixels();
+		final int[] levels = new int[src.length];
+
+		forEachRow((from, to) -> {
+			for (int p = from * width; p < to * width; p++) {
+				levels[p] = sdtv(src[p]);
+			}
+		});
+
+		return levels;
+	}
+
 	public int[] histogram(int x, int y, int w, int h) {
+		final int[] src = getPixels();
 		int[] hist = new int[256];
 
 		if (x + w > width) {
@@ -111,11 +190,10 @@ public class GrayscaleFilter extends BaseFilter {
 		}
 
 		for (int j = y; j < y + h; j++) {
-			for (int i = x; i < x + w; i++) {
-				int px = image.getRGB(i, j);
+			for (int i = x, p = j * width + x; i < x + w; i++, p++) {
+				int px = src[p];
 
-				int[] rgb = getRGBComponents(px);
-				int c = (int) (0.299f * rgb[R] + 0.587f * rgb[G] + 0.114f * rgb[B]);
+				int c = sdtv(px);
 
 				hist[c]++;
 			}
@@ -0,0 +1,64 @@
+package filters;
+
+// L1 distance between the gray level histogram of a sliding window and a target histogram,
+// kept up to date as single pixels enter and leave the window.
+final class HistogramDistance {
+
+	// window histogram minus the target histogram
+	private final int[] diff = new int[256];
+	private int distance = 0;
+
+	HistogramDistance(final int[] target) {
+		reset(target);
+	}
+
+	// empty window again
+	void reset(final int[] target) {
+		distance = 0;
+		for (int v = 0; v < diff.length; v++) {
+			diff[v] = -target[v];
+			distance += target[v];
+		}
+	}
+
+	int distance() {
+		return distance;
+	}
+
+	void add(final int level) {
+		distance += diff[level] >= 0 ? 1 : -1;
+		diff[level]++;
+	}
+
+	void remove(final int level) {
+		distance += diff[level] <= 0 ? 1 : -1;
+		diff[level]--;
+	}
+
+	// the w levels of a row of a plane with the given stride, starting at (x, y)
+	void addRow(final int[] plane, final int stride, final int x, final int y, final int w) {
+		for (int p = y * stride + x, end = p + w; p < end; p++) {
+			add(plane[p]);
+		}
+	}
+
+	void removeRow(final int[] plane, final int stride, final int x, final int y, final int w) {
+		for (int p = y * stride + x, end = p + w; p < end; p++) {
+			remove(plane[p]);
+		}
+	}
+
+	// the h levels of a column starting at (x, y)
+	void addColumn(final int[] plane, final int stride, final int x, final int y, final int h) {
+		for (int p = y * stride + x, end = p + h * stride; p < end; p += stride) {
+			add(plane[p]);
+		}
+	}
+
+	void removeColumn(final int[] plane, final int stride, final int x, final int y, final int h) {
+		for (int p = y * stride + x, end = p + h * stride; p < end; p += stride) {
+			remove(plane[p]);
+		}
+	}
+
+}
@@ -0,0 +1,122 @@
+package filters;
+
+import java.util.function.IntUnaryOperator;
+
+// Point operation compiled to 256-entry tables: every output channel is a function of one input channel.
+public final class LookupTable {
+
+	private static final int[] SHIFT = { 16, 8, 0, 24 };
+
+	// output channel c = map[c][input channel source[c]], indexed by BaseFilter.R, G, B and A
+	private final int[] source;
+	private final int[][] map;
+
+	// the four maps already shifted into place and merged by input channel:
+	// table[(s << 8) | v] has the bits written by input channel s holding the value v
+	private final int[] table;
+
+	private LookupTable(final int[] source, final int[][] map) {
+		this.source = source;
+		this.map = map;
+		this.table = compile(source, map);
+	}
+
+	public static LookupTable identity() {
+		return new LookupTable(new int[] { BaseFilter.R, BaseFilter.G, BaseFilter.B, BaseFilter.A },
+				new int[][] { ramp(), ramp(), ramp(), ramp() });
+	}
+
+	// same function on red, green and blue; the result is opaque, as colorRGB()
+	public static LookupTable perChannel(final IntUnaryOperator function) {
+		final int[] values = new int[256];
+		for (int v = 0; v < 256; v++) {
+			values[v] = BaseFilter.clamp(function.applyAsInt(v));
+		}
+
+		return new LookupTable(new int[] { BaseFilter.R, BaseFilter.G, BaseFilter.B, BaseFilter.A },
+				new int[][] { values, values.clone(), values.clone(), constant(255) });
+	}
+
+	// copies one channel into red, green and blue
+	public static LookupTable channel(final int channel) {
+		return new LookupTable(new int[] { channel, channel, channel, BaseFilter.A },
+				new int[][] { ramp(), ramp(), ramp(), constant(255) });
+	}
+
+	// same as ~px, alpha included
+	public static LookupTable invert() {
+		final int[] values = new int[256];
+		for (int v = 0; v < 256; v++) {
+			values[v] = 255 - v;
+		}
+
+		return new LookupTable(new int[] { BaseFilter.R, BaseFilter.G, BaseFilter.B, BaseFilter.A },
+				new int[][] { values, values.clone(), values.clone(), values.clone() });
+	}
+
+	// this table followed by next, as a single table
+	public LookupTable andThen(final LookupTable next) {
+		final int[] source = new int[4];
+		final int[][] map = new int[4][256];
+
+		for (int c = 0; c < 4; c++) {
+			final int s = next.source[c];
+			source[c] = this.source[s];
+
+			for (int v = 0; v < 256; v++) {
+				map[c][v] = next.map[c][this.map[s][v]];
+			}
+		}
+
+		return new LookupTable(source, map);
+	}
+
+	public int apply(final int px) {
+		final int[] table = this.table;
+
+		return table[(px >> 16) & 0xFF] | table[256 | ((px >> 8) & 0xFF)] | table[512 | (px & 0xFF)]
+				| table[768 | (px >>> 24)];
+	}
+
+	public void apply(final int[] src, final int[] dst, final int from, final int to) {
+		final int[] table = this.table;
+
+		for (int p = from; p < to; p++) {
+			final int px = src[p];
+			dst[p] = table[(px >> 16) & 0xFF] | table[256 | ((px >> 8) & 0xFF)] | table[512 | (px & 0xFF)]
+					| table[768 | (px >>> 24)];
+		}
+	}
+
+	private static int[] compile(final int[] source, final int[][] map) {
+		final int[] table = new int[1024];
+
+		for (int c = 0; c < 4; c++) {
+			final int offset = source[c] << 8;
+			for (int v = 0; v < 256; v++) {
+				table[offset | v] |= map[c][v] << SHIFT[c];
+			}
+		}
+
+		return table;
+	}
+
+	private static int[] ramp() {
+		final int[] values = new int[256];
+		for (int v = 0; v < 256; v++) {
+			values[v] = v;
+		}
+
+		return values;
+	}
+
+	private static int[] constant(final int value) {
+		final int[] values = new int[256];
+		for (int v = 0; v < 256; v++) {
+			values[v] = value;
+		}
+
+		return values;
+	}
+
+}
@@ -10,53 +10,357 @@ public class MedianFilter extends BaseFilter {
 	}
 
 	public BufferedImage median(int k) {
-		newimage = new BufferedImage(width, height, type);
+		if (k < 0) {
+			throw new IllegalArgumentException("Negative median radius: " + k);
+		}
+
+		// sorting networks for 3x3 and 5x5, where they beat the histograms, sliding histograms otherwise
+		if (k == 1) {
+			return median3();
+		} else if (k == 2) {
+			return median5();
+		}
+
+		return histogram(k);
+	}
+
+	// 3x3 median network with the sorts of the columns shared by the three windows that contain them:
+	// the median is the median of the largest column minimum, the median of the column medians and
+	// the smallest column maximum
+	private BufferedImage median3() {
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
+
+		final int[] xs = borderIndex(width, 1, width + 2);
+		final int[] ys = borderIndex(height, 1, height + 2);
+
+		forEachRow((from, to, scratch) -> {
+			final PaddedRows rows = new PaddedRows(src, width, xs, ys, borderColor, 3, scratch);
+
+			final int[] lo = scratch.ints(xs.length);
+			final int[] mid = scratch.ints(xs.length);
+			final int[] hi = scratch.ints(xs.length);
+			final int[][] out = { scratch.ints(width), scratch.ints(width), scratch.ints(width) };
+
+			for (int j = from; j < to; j++) {
+				rows.moveTo(j);
+
+				for (int c = 0; c < 3; c++) {
+					final int[] r0 = rows.row(c, 0);
+					final int[] r1 = rows.row(c, 1);
+					final int[] r2 = rows.row(c, 2);
+
+					for (int x = 0; x < xs.length; x++) {
+						final int a = Math.min(r0[x], r1[x]);
+						final int b = Math.max(r0[x], r1[x]);
+						final int m = Math.min(b, r2[x]);
+
+						lo[x] = Math.min(a, r2[x]);
+						mid[x] = Math.max(a, m);
+						hi[x] = Math.max(b, r2[x]);
+					}
+
+					final int[] median = out[c];
+					for (int i = 0; i < width; i++) {
+						final int low = Math.max(Math.max(lo[i], lo[i + 1]), lo[i + 2]);
+						final int high = Math.min(Math.min(hi[i], hi[i + 1]), hi[i + 2]);
+						final int middle = median3(mid[i], mid[i + 1], mid[i + 2]);
+
+						median[i] = median3(low, middle, high);
+					}
+				}
+
+				for (int i = 0, p = j * width; i < width; i++, p++) {
+					dst[p] = colorRGB(out[R][i], out[G][i], out[B][i]);
+				}
+			}
+		});
+
+		newimage = createImage(dst);
+
+		return newimage;
+	}
+
+	private static int median3(final int a, final int b, final int c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	// 5x5 median through a sorting network
+	private BufferedImage median5() {
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
+
+		final int[] xs = borderIndex(width, 2, width + 4);
+		final int[] ys = borderIndex(height, 2, height + 4);
+
+		forEachRow((from, to, scratch) -> {
+			final PaddedRows rows = new PaddedRows(src, width, xs, ys, borderColor, 5, scratch);
+
+			final int[][] out = { scratch.ints(width), scratch.ints(width), scratch.ints(width) };
+
+			for (int j = from; j < to; j++) {
+				rows.moveTo(j);
+
+				for (int c = 0; c < 3; c++) {
+					final int[] r0 = rows.row(c, 0);
+					final int[] r1 = rows.row(c, 1);
+					final int[] r2 = rows.row(c, 2);
+					final int[] r3 = rows.row(c, 3);
+					final int[] r4 = rows.row(c, 4);
+
+					final int[] median = out[c];
+					for (int i = 0; i < width; i++) {
+						median[i] = median25(r0, r1, r2, r3, r4, i);
+					}
+				}
+
+				for (int i = 0, p = j * width; i < width; i++, p++) {
+					dst[p] = colorRGB(out[R][i], out[G][i], out[B][i]);
+				}
+			}
+		});
+
+		newimage = createImage(dst);
+
+		return newimage;
+	}
+
+	// median of the 5x5 window r0..r4[i .. i + 4] by the median of 25 network of N. Devillard, with the
+	// exchanges whose minimum or maximum is never read again reduced to a single min or max
+	private static int median25(final int[] r0, final int[] r1, final int[] r2, final int[] r3, final int[] r4,
+			final int i) {
+		int p0 = r0[i], p1 = r0[i + 1], p2 = r0[i + 2], p3 = r0[i + 3], p4 = r0[i + 4];
+		int p5 = r1[i], p6 = r1[i + 1], p7 = r1[i + 2], p8 = r1[i + 3], p9 = r1[i + 4];
+		int p10 = r2[i], p11 = r2[i + 1], p12 = r2[i + 2], p13 = r2[i + 3], p14 = r2[i + 4];
+		int p15 = r3[i], p16 = r3[i + 1], p17 = r3[i + 2], p18 = r3[i + 3], p19 = r3[i + 4];
+		int p20 = r4[i], p21 = r4[i + 1], p22 = r4[i + 2], p23 = r4[i + 3], p24 = r4[i + 4];
+		int t;
+
+		t = p0; p0 = Math.min(t, p1); p1 = Math.max(t, p1);
+		t = p3; p3 = Math.min(t, p4); p4 = Math.max(t, p4);
+		t = p2; p2 = Math.min(t, p4); p4 = Math.max(t, p4);
+		t = p2; p2 = Math.min(t, p3); p3 = Math.max(t, p3);
+		t = p6; p6 = Math.min(t, p7); p7 = Math.max(t, p7);
+		t = p5; p5 = Math.min(t, p7); p7 = Math.max(t, p7);
+		t = p5; p5 = Math.min(t, p6); p6 = Math.max(t, p6);
+		t = p9; p9 = Math.min(t, p10); p10 = Math.max(t, p10);
+		t = p8; p8 = Math.min(t, p10); p10 = Math.max(t, p10);
+		t = p8; p8 = Math.min(t, p9); p9 = Math.max(t, p9);
+		t = p12; p12 = Math.min(t, p13); p13 = Math.max(t, p13);
+		t = p11; p11 = Math.min(t, p13); p13 = Math.max(t, p13);
+		t = p11; p11 = Math.min(t, p12); p12 = Math.max(t, p12);
+		t = p15; p15 = Math.min(t, p16); p16 = Math.max(t, p16);
+		t = p14; p14 = Math.min(t, p16); p16 = Math.max(t, p16);
+		t = p14; p14 = Math.min(t, p15); p15 = Math.max(t, p15);
+		t = p18; p18 = Math.min(t, p19); p19 = Math.max(t, p19);
+		t = p17; p17 = Math.min(t, p19); p19 = Math.max(t, p19);
+		t = p17; p17 = Math.min(t, p18); p18 = Math.max(t, p18);
+		t = p21; p21 = Math.min(t, p22); p22 = Math.max(t, p22);
+		t = p20; p20 = Math.min(t, p22); p22 = Math.max(t, p22);
+		t = p20; p20 = Math.min(t, p21); p21 = Math.max(t, p21);
+		t = p23; p23 = Math.min(t, p24); p24 = Math.max(t, p24);
+		t = p2; p2 = Math.min(t, p5); p5 = Math.max(t, p5);
+		t = p3; p3 = Math.min(t, p6); p6 = Math.max(t, p6);
+		t = p0; p0 = Math.min(t, p6); p6 = Math.max(t, p6);
+		t = p0; p0 = Math.min(t, p3); p3 = Math.max(t, p3);
+		t = p4; p4 = Math.min(t, p7); p7 = Math.max(t, p7);
+		t = p1; p1 = Math.min(t, p7); p7 = Math.max(t, p7);
+		t = p1; p1 = Math.min(t, p4); p4 = Math.max(t, p4);
+		t = p11; p11 = Math.min(t, p14); p14 = Math.max(t, p14);
+		t = p8; p8 = Math.min(t, p14); p14 = Math.max(t, p14);
+		t = p8; p8 = Math.min(t, p11); p11 = Math.max(t, p11);
+		t = p12; p12 = Math.min(t, p15); p15 = Math.max(t, p15);
+		t = p9; p9 = Math.min(t, p15); p15 = Math.max(t, p15);
+		t = p9; p9 = Math.min(t, p12); p12 = Math.max(t, p12);
+		t = p13; p13 = Math.min(t, p16); p16 = Math.max(t, p16);
+		t = p10; p10 = Math.min(t, p16); p16 = Math.max(t, p16);
+		t = p10; p10 = Math.min(t, p13); p13 = Math.max(t, p13);
+		t = p20; p20 = Math.min(t, p23); p23 = Math.max(t, p23);
+		t = p17; p17 = Math.min(t, p23); p23 = Math.max(t, p23);
+		t = p17; p17 = Math.min(t, p20); p20 = Math.max(t, p20);
+		t = p21; p21 = Math.min(t, p24); p24 = Math.max(t, p24);
+		t = p18; p18 = Math.min(t, p24); p24 = Math.max(t, p24);
+		t = p18; p18 = Math.min(t, p21); p21 = Math.max(t, p21);
+		t = p19; p19 = Math.min(t, p22); p22 = Math.max(t, p22);
+		p17 = Math.max(p8, p17);
+		t = p9; p9 = Math.min(t, p18); p18 = Math.max(t, p18);
+		t = p0; p0 = Math.min(t, p18); p18 = Math.max(t, p18);
+		p9 = Math.max(p0, p9);
+		t = p10; p10 = Math.min(t, p19); p19 = Math.max(t, p19);
+		t = p1; p1 = Math.min(t, p19); p19 = Math.max(t, p19);
+		t = p1; p1 = Math.min(t, p10); p10 = Math.max(t, p10);
+		t = p11; p11 = Math.min(t, p20); p20 = Math.max(t, p20);
+		t = p2; p2 = Math.min(t, p20); p20 = Math.max(t, p20);
+		p11 = Math.max(p2, p11);
+		t = p12; p12 = Math.min(t, p21); p21 = Math.max(t, p21);
+		t = p3; p3 = Math.min(t, p21); p21 = Math.max(t, p21);
+		t = p3; p3 = Math.min(t, p12); p12 = Math.max(t, p12);
+		t = p13; p13 = Math.min(t, p22); p22 = Math.max(t, p22);
+		p4 = Math.min(p4, p22);
+		t = p4; p4 = Math.min(t, p13); p13 = Math.max(t, p13);
+		t = p14; p14 = Math.min(t, p23); p23 = Math.max(t, p23);
+		t = p5; p5 = Math.min(t, p23); p23 = Math.max(t, p23);
+		t = p5; p5 = Math.min(t, p14); p14 = Math.max(t, p14);
+		t = p15; p15 = Math.min(t, p24); p24 = Math.max(t, p24);
+		p6 = Math.min(p6, p24);
+		t = p6; p6 = Math.min(t, p15); p15 = Math.max(t, p15);
+		p7 = Math.min(p7, p16);
+		p7 = Math.min(p7, p19);
+		p13 = Math.min(p13, p21);
+		p15 = Math.min(p15, p23);
+		p7 = Math.min(p7, p13);
+		p7 = Math.min(p7, p15);
+		p9 = Math.max(p1, p9);
+		p11 = Math.max(p3, p11);
+		p17 = Math.max(p5, p17);
+		p17 = Math.max(p11, p17);
+		p17 = Math.max(p9, p17);
+		t = p4; p4 = Math.min(t, p10); p10 = Math.max(t, p10);
+		t = p6; p6 = Math.min(t, p12); p12 = Math.max(t, p12);
+		t = p7; p7 = Math.min(t, p14); p14 = Math.max(t, p14);
+		t = p4; p4 = Math.min(t, p6); p6 = Math.max(t, p6);
+		p7 = Math.max(p4, p7);
+		t = p12; p12 = Math.min(t, p14); p14 = Math.max(t, p14);
+		p10 = Math.min(p10, p14);
+		t = p6; p6 = Math.min(t, p7); p7 = Math.max(t, p7);
+		t = p10; p10 = Math.min(t, p12); p12 = Math.max(t, p12);
+		t = p6; p6 = Math.min(t, p10); p10 = Math.max(t, p10);
+		p17 = Math.max(p6, p17);
+		t = p12; p12 = Math.min(t, p17); p17 = Math.max(t, p17);
+		p7 = Math.min(p7, p17);
+		t = p7; p7 = Math.min(t, p10); p10 = Math.max(t, p10);
+		t = p12; p12 = Math.min(t, p18); p18 = Math.max(t, p18);
+		p12 = Math.max(p7, p12);
+		p10 = Math.min(p10, p18);
+		t = p12; p12 = Math.min(t, p20); p20 = Math.max(t, p20);
+		p10 = Math.min(p10, p20);
+		p12 = Math.max(p10, p12);
+
+		return p12;
+	}
+
+	// S. Perreault and P. Hebert, "Median Filtering in Constant Time": a histogram per padded column is
+	// moved down one row per output row, and the window histogram, the sum of size column histograms,
+	// is moved right one column per pixel. The window keeps its 16 coarse bins up to date and brings
+	// the 16 fine bins of a coarse bin up to date only when the median falls in it.
+	private BufferedImage histogram(final int k) {
+		final int[] src = getPixels();
+		final int[] dst = new int[src.length];
 
 		final int size = k + k + 1;
-		final int center = (size * size - 1) / 2;
+		final int rank = (size * size - 1) / 2;
+
+		final int[] xs = borderIndex(width, k, width + size - 1);
+		// one more line above the window, for the row that leaves it
+		final int[] ys = borderIndex(height, k + 1, height + size);
+		final int pw = xs.length;
+
+		forEachRow((from, to, scratch) -> {
+			final PaddedRows rows = new PaddedRows(src, width, xs, ys, borderColor, size + 1, scratch);
+
+			// column histograms, at most size pixels per column
+			final char[][] coarse = { scratch.chars(pw * 16), scratch.chars(pw * 16), scratch.chars(pw * 16) };
+			final char[][] fine = { scratch.chars(pw * 256), scratch.chars(pw * 256), scratch.chars(pw * 256) };
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
+			// window histogram and the window position its fine bins were last brought to
+			final int[] wc = new int[16];
+			final int[] wf = new int[256];
+			final int[] last = new int[16];
 
-				int c = 0;
-				int[][] colors = new int[3][size * size];
+			final int[][] out = { scratch.ints(width), scratch.ints(width), scratch.ints(width) };
 
-				for (int y = 0; y < size; y++) {
+			for (int j = from; j < to; j++) {
+				rows.moveTo(j);
+
+				for (int c = 0; c < 3; c++) {
+					final char[] hc = coarse[c];
+					final char[] hf = fine[c];
+
+					if (j == from) {
+						for (int l = 1; l <= size; l++) {
+							final int[] line = rows.row(c, l);
+							for (int x = 0; x < pw; x++) {
+								final int v = line[x];
+								hc[(x << 4) + (v >> 4)]++;
+								hf[(x << 8) + v]++;
+							}
+						}
+					} else {
+						final int[] leaving = rows.row(c, 0);
+						final int[] entering = rows.row(c, size);
+						for (int x = 0; x < pw; x++) {
+							final int u = leaving[x];
+							hc[(x << 4) + (u >> 4)]--;
+							hf[(x << 8) + u]--;
+
+							final int v = entering[x];
+							hc[(x << 4) + (v >> 4)]++;
+							hf[(x << 8) + v]++;
+						}
+					}
+
+					Arrays.fill(wc, 0);
+					Arrays.fill(last, -size);
 					for (int x = 0; x < size; x++) {
-						int tx = (i - k + x);
-						int ty = (j - k + y);
+						for (int b = 0; b < 16; b++) {
+							wc[b] += hc[(x << 4) + b];
+						}
+					}
 
-						if (tx < 0) {
-							tx = 0;
-						} else if (tx >= width) {
-							tx = width - 1;
+					final int[] median = out[c];
+					for (int i = 0; i < width; i++) {
+						if (i > 0) {
+							final int in = (i + size - 1) << 4;
+							final int off = (i - 1) << 4;
+							for (int b = 0; b < 16; b++) {
+								wc[b] += hc[in + b] - hc[off + b];
+							}
 						}
 
-						if (ty < 0) {
-							ty = 0;
-						} else if (ty >= height) {
-							ty = height - 1;
+						// coarse bin holding the median, and the count below it
+						int b = 0;
+						int count = 0;
+						while (count + wc[b] <= rank) {
+							count += wc[b];
+							b++;
 						}
 
-						int px = image.getRGB(tx, ty);
-						int[] rgb = getRGBComponents(px);
+						final int base = b << 4;
+						if (i - last[b] >= size) {
+							Arrays.fill(wf, base, base + 16, 0);
+							for (int x = i; x < i + size; x++) {
+								for (int f = base; f < base + 16; f++) {
+									wf[f] += hf[(x << 8) + f];
+								}
+							}
+						} else {
+							for (int x = last[b]; x < i; x++) {
+								final int in = (x + size) << 8;
+								final int off = x << 8;
+								for (int f = base; f < base + 16; f++) {
+									wf[f] += hf[in + f] - hf[off + f];
+								}
+							}
+						}
+						last[b] = i;
+
+						int v = base;
+						while (count + wf[v] <= rank) {
+							count += wf[v];
+							v++;
+						}
 
-						colors[R][c] = rgb[R];
-						colors[G][c] = rgb[G];
-						colors[B][c] = rgb[B];
-						c++;
+						median[i] = v;
 					}
 				}
 
-				Arrays.sort(colors[R]);
-				Arrays.sort(colors[G]);
-				Arrays.sort(colors[B]);
-				c = 0;
-
-				newimage.setRGB(i, j, colorRGB(colors[R][center], colors[G][center], colors[B][center]));
-
+				for (int i = 0, p = j * width; i < width; i++, p++) {
+					dst[p] = colorRGB(out[R][i], out[G][i], out[B][i]);
+				}
 			}
-		}
+		});
+
+		newimage = createImage(dst);
 
 		return newimage;
 	}
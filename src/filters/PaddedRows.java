@@ -0,0 +1,97 @@
+package filters;
+
+import java.util.Arrays;
+
+// The source rows under a kernel window, unpacked per channel and padded on both sides for the
+// border mode, kept in a ring so that each source row of a band is unpacked only once.
+// Kernel loops read row(kr)[i + kc] for the tap (kr, kc) of output pixel i without bounds checks.
+final class PaddedRows {
+
+	private final int[] src;
+	private final int width;
+
+	// source column of every padded position and source row of every line, -1 for the border color
+	private final int[] xs, ys;
+	private final int color;
+
+	private final int kh;
+	private final int[][] red, green, blue;
+
+	// lines of ys currently held by the ring
+	private int first = 0, last = 0;
+
+	// the lines are taken from the scratch of the band
+	PaddedRows(final int[] src, final int width, final int[] xs, final int[] ys, final int color, final int kh,
+			final Scratch scratch) {
+		this.src = src;
+		this.width = width;
+		this.xs = xs;
+		this.ys = ys;
+		this.color = color;
+		this.kh = kh;
+		this.red = new int[kh][];
+		this.green = new int[kh][];
+		this.blue = new int[kh][];
+
+		for (int l = 0; l < kh; l++) {
+			red[l] = scratch.ints(xs.length);
+			green[l] = scratch.ints(xs.length);
+			blue[l] = scratch.ints(xs.length);
+		}
+	}
+
+	// makes the rows under output row j available
+	void moveTo(final int j) {
+		// rows already held since the previous output row are kept
+		final int start = j >= first && j <= last ? last : j;
+
+		for (int line = start; line < j + kh; line++) {
+			unpack(ys[line], red[line % kh], green[line % kh], blue[line % kh]);
+		}
+
+		first = j;
+		last = j + kh;
+	}
+
+	// row kr of the channel BaseFilter.R, G or B
+	int[] row(final int channel, final int kr) {
+		switch (channel) {
+		case BaseFilter.R:
+			return red(kr);
+		case BaseFilter.G:
+			return green(kr);
+		default:
+			return blue(kr);
+		}
+	}
+
+	int[] red(final int kr) {
+		return red[(first + kr) % kh];
+	}
+
+	int[] green(final int kr) {
+		return green[(first + kr) % kh];
+	}
+
+	int[] blue(final int kr) {
+		return blue[(first + kr) % kh];
+	}
+
+	private void unpack(final int y, final int[] r, final int[] g, final int[] b) {
+		if (y < 0) {
+			Arrays.fill(r, BaseFilter.getRed(color));
+			Arrays.fill(g, BaseFilter.getGreen(color));
+			Arrays.fill(b, BaseFilter.getBlue(color));
+			return;
+		}
+
+		final int line = y * width;
+		for (int x = 0; x < xs.length; x++) {
+			final int px = xs[x] < 0 ? color : src[line + xs[x]];
+			r[x] = BaseFilter.getRed(px);
+			g[x] = BaseFilter.getGreen(px);
+			b[x] = BaseFilter.getBlue(px);
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package filters;
+
+// Image-image operations on the packed ARGB pixels [from, to) of two images, the inner loops of the
+// arithmetic, bitwise and blending filters. Every implementation gives the same pixels as the scalar one.
+interface PixelOps {
+
+	interface Range {
+		void apply(int[] a, int[] b, int[] dst, int from, int to);
+	}
+
+	void add(int[] a, int[] b, int[] dst, int from, int to);
+
+	void sub(int[] a, int[] b, int[] dst, int from, int to);
+
+	void mul(int[] a, int[] b, int[] dst, int from, int to);
+
+	void div(int[] a, int[] b, int[] dst, int from, int to);
+
+	void and(int[] a, int[] b, int[] dst, int from, int to);
+
+	void or(int[] a, int[] b, int[] dst, int from, int to);
+
+	void xor(int[] a, int[] b, int[] dst, int from, int to);
+
+	// table[(a << 8) | b] is the output channel for the input channels a and b
+	void blend(int[] a, int[] b, int[] dst, int from, int to, byte[] table);
+
+	static PixelOps get() {
+		return Loader.OPS;
+	}
+
+	// the Vector API implementation is compiled from the optional source folder simd and needs the
+	// jdk.incubator.vector module at run time; without either, or with -Dfilters.simd=false, the
+	// scalar loops are used
+	final class Loader {
+
+		private static final PixelOps OPS = load();
+
+		private static PixelOps load() {
+			if (!Boolean.parseBoolean(System.getProperty("filters.simd", "true"))) {
+				return new ScalarPixelOps();
+			}
+
+			try {
+				return (PixelOps) Class.forName("filters.VectorPixelOps").getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				return new ScalarPixelOps();
+			}
+		}
+
+	}
+
+}
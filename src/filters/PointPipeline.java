@@ -0,0 +1,246 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+// Chain of point operations applied in a single pass with a single destination buffer.
+// Consecutive per-channel steps are composed into one LookupTable; a grayscale step
+// and the per-channel steps after it collapse into one 256-entry table on the gray level.
+// Images whose type does not hold every packed pixel (BaseFilter.isExact), such as TYPE_BYTE_GRAY,
+// take each step through the image again between filters, so on them the steps are applied one by one
+// by the filters of the same name to give the same result.
+public class PointPipeline {
+
+	private static final int AVERAGE = 0;
+	private static final int SDTV = 1;
+	private static final int HDTV = 2;
+
+	// per-channel table applied before the first gray conversion, null if there is none
+	private LookupTable head = null;
+
+	// gray conversion of each stage and the packed output for every gray level
+	private final List<Integer> mixes = new ArrayList<>();
+	private final List<int[]> levels = new ArrayList<>();
+
+	private final List<String> steps = new ArrayList<>();
+
+	// the filter of every step, for the images that cannot take the fused pass
+	private final List<UnaryOperator<BufferedImage>> filters = new ArrayList<>();
+
+	public PointPipeline add(final int k) {
+		return then(LookupTable.perChannel(v -> BaseFilter.clamp(v + k)), "add " + k,
+				image -> new ArithmeticFilter(image).add(k));
+	}
+
+	public PointPipeline sub(final int k) {
+		return then(LookupTable.perChannel(v -> BaseFilter.clamp(v - k)), "sub " + k,
+				image -> new ArithmeticFilter(image).sub(k));
+	}
+
+	public PointPipeline mul(final double k) {
+		return then(LookupTable.perChannel(v -> BaseFilter.clamp(v * k)), "mul " + k,
+				image -> new ArithmeticFilter(image).mul(k));
+	}
+
+	public PointPipeline div(final double k) {
+		// prevent division by zero
+		final double d = k == 0 ? 1 : k;
+
+		return then(LookupTable.perChannel(v -> BaseFilter.clamp(v / d)), "div " + k,
+				image -> new ArithmeticFilter(image).div(k));
+	}
+
+	public PointPipeline and(final int k) {
+		final int c = BaseFilter.clamp(k);
+
+		return then(LookupTable.perChannel(v -> v & c), "and " + k, image -> new BitwiseFilter(image).and(k));
+	}
+
+	public PointPipeline or(final int k) {
+		final int c = BaseFilter.clamp(k);
+
+		return then(LookupTable.perChannel(v -> v | c), "or " + k, image -> new BitwiseFilter(image).or(k));
+	}
+
+	public PointPipeline xor(final int k) {
+		final int c = BaseFilter.clamp(k);
+
+		return then(LookupTable.perChannel(v -> v ^ c), "xor " + k, image -> new BitwiseFilter(image).xor(k));
+	}
+
+	public PointPipeline not() {
+		return then(LookupTable.invert(), "not", image -> new BitwiseFilter(image).not());
+	}
+
+	public PointPipeline red() {
+		return then(LookupTable.channel(BaseFilter.R), "red", image -> new ChannelFilter(image).red());
+	}
+
+	public PointPipeline green() {
+		return then(LookupTable.channel(BaseFilter.G), "green", image -> new ChannelFilter(image).green());
+	}
+
+	public PointPipeline blue() {
+		return then(LookupTable.channel(BaseFilter.B), "blue", image -> new ChannelFilter(image).blue());
+	}
+
+	public PointPipeline average() {
+		return mix(AVERAGE, "average", image -> new GrayscaleFilter(image).average());
+	}
+
+	public PointPipeline sdtv() {
+		return mix(SDTV, "sdtv", image -> new GrayscaleFilter(image).sdtv());
+	}
+
+	public PointPipeline hdtv() {
+		return mix(HDTV, "hdtv", image -> new GrayscaleFilter(image).hdtv());
+	}
+
+	public PointPipeline threshold(final int max) {
+		return threshold(0, max);
+	}
+
+	// same as GrayscaleFilter.threshold: BT.709 gray level, black inside [min, max], white outside
+	public PointPipeline threshold(final int min, final int max) {
+		mix(HDTV, null, null);
+
+		return then(LookupTable.perChannel(v -> (v >= min && v <= max) ? 0 : 255), "threshold " + min + "-" + max,
+				image -> new GrayscaleFilter(image).threshold(min, max));
+	}
+
+	// appends all the steps of another pipeline
+	public PointPipeline then(final PointPipeline next) {
+		if (next.head != null) {
+			then(next.head, null, null);
+		}
+
+		for (int i = 0; i < next.mixes.size(); i++) {
+			final int[] levels = next.levels.get(i);
+			mix(next.mixes.get(i), null, null);
+
+			// the gray stage just added maps every level to an opaque gray, replace it by the next stage table
+			this.levels.set(this.levels.size() - 1, levels.clone());
+		}
+
+		steps.addAll(next.steps);
+		filters.addAll(next.filters);
+
+		return this;
+	}
+
+	private PointPipeline then(final LookupTable table, final String step,
+			final UnaryOperator<BufferedImage> filter) {
+		if (mixes.isEmpty()) {
+			head = head == null ? table : head.andThen(table);
+		} else {
+			final int[] last = levels.get(levels.size() - 1);
+			for (int c = 0; c < last.length; c++) {
+				last[c] = table.apply(last[c]);
+			}
+		}
+
+		if (step != null) {
+			steps.add(step);
+			filters.add(filter);
+		}
+
+		return this;
+	}
+
+	private PointPipeline mix(final int mix, final String step, final UnaryOperator<BufferedImage> filter) {
+		final int[] gray = new int[256];
+		for (int c = 0; c < gray.length; c++) {
+			gray[c] = BaseFilter.colorRGB(c, c, c);
+		}
+
+		mixes.add(mix);
+		levels.add(gray);
+
+		if (step != null) {
+			steps.add(step);
+			filters.add(filter);
+		}
+
+		return this;
+	}
+
+	public boolean isEmpty() {
+		return steps.isEmpty();
+	}
+
+	public int size() {
+		return steps.size();
+	}
+
+	public List<String> getSteps() {
+		return new ArrayList<>(steps);
+	}
+
+	public BufferedImage apply(final BufferedImage image) {
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+
+		if (!BaseFilter.isExact(image) && !filters.isEmpty()) {
+			BufferedImage result = image;
+			for (UnaryOperator<BufferedImage> filter : filters) {
+				result = filter.apply(result);
+			}
+			return result;
+		}
+
+		final int[] src = BaseFilter.getPixels(image);
+		final int[] dst = new int[src.length];
+
+		final LookupTable head = this.head;
+		final int stages = mixes.size();
+		final int[] mixes = new int[stages];
+		final int[][] levels = new int[stages][];
+		for (int i = 0; i < stages; i++) {
+			mixes[i] = this.mixes.get(i);
+			levels[i] = this.levels.get(i);
+		}
+
+		FilterExecutor.forEachRow(height, (from, to) -> {
+			final int start = from * width;
+			final int end = to * width;
+
+			if (head != null) {
+				head.apply(src, dst, start, end);
+			} else {
+				System.arraycopy(src, start, dst, start, end - start);
+			}
+
+			for (int i = 0; i < stages; i++) {
+				final int[] table = levels[i];
+
+				switch (mixes[i]) {
+				case AVERAGE:
+					for (int p = start; p < end; p++) {
+						dst[p] = table[GrayscaleFilter.average(dst[p])];
+					}
+					break;
+				case SDTV:
+					for (int p = start; p < end; p++) {
+						dst[p] = table[GrayscaleFilter.sdtv(dst[p])];
+					}
+					break;
+				case HDTV:
+					for (int p = start; p < end; p++) {
+						dst[p] = table[GrayscaleFilter.hdtv(dst[p])];
+					}
+					break;
+				}
+			}
+		});
+
+		return BaseFilter.createImage(dst, width, height, image.getType());
+	}
+
+	@Override
+	public String toString() {
+		return String.join(" > ", steps);
+	}
+
+}
@@ -0,0 +1,156 @@
+package filters;
+
+import java.util.Arrays;
+
+// Weights of a separable resampling filter along one axis, computed once for a given input and output
+// size: output pixel o is the sum over k of weight[o * taps + k] times input pixel index[o * taps + k],
+// in 14-bit fixed point. Output pixel centers map to input coordinate (o + 0.5) / scale - 0.5; when
+// shrinking, the filter is stretched by 1 / scale so every input pixel contributes (area averaging).
+final class Resampler {
+
+	private static final int BITS = 14;
+	private static final int ONE = 1 << BITS;
+
+	final int taps;
+	final int[] index;
+	final int[] weight;
+
+	Resampler(final int filter, final int in, final int out, final double scale) {
+		final double stretch = Math.max(1, 1 / scale);
+		final double support = radius(filter) * stretch;
+
+		taps = (int) Math.ceil(2 * support) + 1;
+		index = new int[out * taps];
+		weight = new int[out * taps];
+
+		final double[] w = new double[taps];
+
+		for (int o = 0; o < out; o++) {
+			final double center = (o + 0.5) / scale - 0.5;
+			final int first = (int) Math.floor(center - support);
+
+			double sum = 0;
+			for (int k = 0; k < taps; k++) {
+				w[k] = kernel(filter, (first + k - center) / stretch);
+				sum += w[k];
+			}
+
+			// normalized, with the rounding error on the largest weight so they add up to exactly one
+			int total = 0, largest = 0;
+			for (int k = 0, p = o * taps; k < taps; k++, p++) {
+				index[p] = BaseFilter.clamp(first + k, 0, in - 1);
+				weight[p] = sum == 0 ? 0 : (int) Math.round(w[k] / sum * ONE);
+				total += weight[p];
+
+				if (weight[p] > weight[o * taps + largest]) {
+					largest = k;
+				}
+			}
+			weight[o * taps + largest] += ONE - total;
+		}
+	}
+
+	private static double radius(final int filter) {
+		switch (filter) {
+		case GeometricFilter.BOX:
+			return 0.5;
+		case GeometricFilter.BILINEAR:
+			return 1;
+		case GeometricFilter.BICUBIC:
+			return 2;
+		default:
+			return 3;
+		}
+	}
+
+	private static double kernel(final int filter, final double t) {
+		final double x = Math.abs(t);
+
+		switch (filter) {
+		case GeometricFilter.BOX:
+			// half open, so an input pixel on the edge between two outputs goes to one of them only
+			return t >= -0.5 && t < 0.5 ? 1 : 0;
+		case GeometricFilter.BILINEAR:
+			return x < 1 ? 1 - x : 0;
+		case GeometricFilter.BICUBIC:
+			// Catmull-Rom
+			if (x < 1) {
+				return (1.5 * x - 2.5) * x * x + 1;
+			}
+			return x < 2 ? ((-0.5 * x + 2.5) * x - 4) * x + 2 : 0;
+		default:
+			// Lanczos, 3 lobes
+			if (x < 1e-9) {
+				return 1;
+			}
+			return x < 3 ? 3 * Math.sin(Math.PI * x) * Math.sin(Math.PI * x / 3) / (Math.PI * Math.PI * x * x) : 0;
+		}
+	}
+
+	// resamples the rows [from, to) of a sw-wide plane along x, into out-wide rows
+	void horizontal(final int[] src, final int sw, final int[] dst, final int from, final int to) {
+		final int out = index.length / taps;
+
+		for (int y = from; y < to; y++) {
+			final int row = y * sw;
+
+			for (int o = 0, d = y * out; o < out; o++, d++) {
+				int a = 0, r = 0, g = 0, b = 0;
+
+				for (int k = 0, p = o * taps; k < taps; k++, p++) {
+					final int px = src[row + index[p]];
+					final int w = weight[p];
+
+					a += w * (px >>> 24);
+					r += w * ((px >> 16) & 0xFF);
+					g += w * ((px >> 8) & 0xFF);
+					b += w * (px & 0xFF);
+				}
+
+				dst[d] = pack(a, r, g, b);
+			}
+		}
+	}
+
+	// resamples along y into the output rows [from, to) of a w-wide plane
+	void vertical(final int[] src, final int w, final int[] dst, final int from, final int to) {
+		final int[] a = new int[w];
+		final int[] r = new int[w];
+		final int[] g = new int[w];
+		final int[] b = new int[w];
+
+		for (int o = from; o < to; o++) {
+			Arrays.fill(a, 0);
+			Arrays.fill(r, 0);
+			Arrays.fill(g, 0);
+			Arrays.fill(b, 0);
+
+			for (int k = 0, p = o * taps; k < taps; k++, p++) {
+				final int row = index[p] * w;
+				final int wk = weight[p];
+
+				for (int x = 0; x < w; x++) {
+					final int px = src[row + x];
+
+					a[x] += wk * (px >>> 24);
+					r[x] += wk * ((px >> 16) & 0xFF);
+					g[x] += wk * ((px >> 8) & 0xFF);
+					b[x] += wk * (px & 0xFF);
+				}
+			}
+
+			for (int x = 0, d = o * w; x < w; x++, d++) {
+				dst[d] = pack(a[x], r[x], g[x], b[x]);
+			}
+		}
+	}
+
+	// fixed-point channel sums, rounded and clamped, as a packed pixel
+	private static int pack(final int a, final int r, final int g, final int b) {
+		final int half = ONE >> 1;
+
+		return BaseFilter.clamp((a + half) >> BITS) << 24 | BaseFilter.clamp((r + half) >> BITS) << 16
+				| BaseFilter.clamp((g + half) >> BITS) << 8 | BaseFilter.clamp((b + half) >> BITS);
+	}
+
+}
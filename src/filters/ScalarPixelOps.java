@@ -0,0 +1,107 @@
+package filters;
+
+class ScalarPixelOps implements PixelOps {
+
+	// alpha written by BaseFilter.colorRGB(), the results are opaque
+	static final int OPAQUE = 0xFF000000;
+
+	@Override
+	public void add(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		for (int p = from; p < to; p++) {
+			final int px = a[p];
+			final int px2 = b[p];
+
+			final int r = BaseFilter.clamp(BaseFilter.getRed(px) + BaseFilter.getRed(px2));
+			final int g = BaseFilter.clamp(BaseFilter.getGreen(px) + BaseFilter.getGreen(px2));
+			final int bl = BaseFilter.clamp(BaseFilter.getBlue(px) + BaseFilter.getBlue(px2));
+
+			dst[p] = BaseFilter.colorRGB(r, g, bl);
+		}
+	}
+
+	@Override
+	public void sub(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		for (int p = from; p < to; p++) {
+			final int px = a[p];
+			final int px2 = b[p];
+
+			final int r = BaseFilter.clamp(BaseFilter.getRed(px) - BaseFilter.getRed(px2));
+			final int g = BaseFilter.clamp(BaseFilter.getGreen(px) - BaseFilter.getGreen(px2));
+			final int bl = BaseFilter.clamp(BaseFilter.getBlue(px) - BaseFilter.getBlue(px2));
+
+			dst[p] = BaseFilter.colorRGB(r, g, bl);
+		}
+	}
+
+	@Override
+	public void mul(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		for (int p = from; p < to; p++) {
+			final int px = a[p];
+			final int px2 = b[p];
+
+			final int r = BaseFilter.clamp(BaseFilter.getRed(px) * BaseFilter.getRed(px2));
+			final int g = BaseFilter.clamp(BaseFilter.getGreen(px) * BaseFilter.getGreen(px2));
+			final int bl = BaseFilter.clamp(BaseFilter.getBlue(px) * BaseFilter.getBlue(px2));
+
+			dst[p] = BaseFilter.colorRGB(r, g, bl);
+		}
+	}
+
+	@Override
+	public void div(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		for (int p = from; p < to; p++) {
+			final int px = a[p];
+			final int px2 = b[p];
+
+			// prevent division by zero
+			final int r2 = Math.max(1, BaseFilter.getRed(px2));
+			final int g2 = Math.max(1, BaseFilter.getGreen(px2));
+			final int b2 = Math.max(1, BaseFilter.getBlue(px2));
+
+			final int r = BaseFilter.clamp(BaseFilter.getRed(px) / r2);
+			final int g = BaseFilter.clamp(BaseFilter.getGreen(px) / g2);
+			final int bl = BaseFilter.clamp(BaseFilter.getBlue(px) / b2);
+
+			dst[p] = BaseFilter.colorRGB(r, g, bl);
+		}
+	}
+
+	// the bitwise operations work on the three channels at once
+
+	@Override
+	public void and(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		for (int p = from; p < to; p++) {
+			dst[p] = (a[p] & b[p]) | OPAQUE;
+		}
+	}
+
+	@Override
+	public void or(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		for (int p = from; p < to; p++) {
+			dst[p] = a[p] | b[p] | OPAQUE;
+		}
+	}
+
+	@Override
+	public void xor(final int[] a, final int[] b, final int[] dst, final int from, final int to) {
+		for (int p = from; p < to; p++) {
+			dst[p] = (a[p] ^ b[p]) | OPAQUE;
+		}
+	}
+
+	@Override
+	public void blend(final int[] a, final int[] b, final int[] dst, final int from, final int to,
+			final byte[] table) {
+		for (int p = from; p < to; p++) {
+			final int px = a[p];
+			final int px2 = b[p];
+
+			final int r = table[((px >> 8) & 0xFF00) | ((px2 >> 16) & 0xFF)] & 0xFF;
+			final int g = table[(px & 0xFF00) | ((px2 >> 8) & 0xFF)] & 0xFF;
+			final int bl = table[((px << 8) & 0xFF00) | (px2 & 0xFF)] & 0xFF;
+
+			dst[p] = BaseFilter.colorRGB(r, g, bl);
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package filters;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The buffers of a band (padded kernel rows, line sums, column histograms), kept by the thread that
+// runs it for the next band and the next filter. A band asks for its arrays in the same order every
+// time, so the n-th request gets back the n-th array of the previous band when it has the same length,
+// zeroed as a new one would be: a filter run again on an image of the same width allocates its output
+// only, whatever its kernel size and however many bands it is split in. The arrays are held softly.
+final class Scratch {
+
+	interface Rows {
+		// processes the rows [from, to) with the scratch of the thread
+		void run(int from, int to, Scratch scratch);
+	}
+
+	private static final ThreadLocal<SoftReference<Scratch>> SCRATCH = new ThreadLocal<>();
+
+	private final List<int[]> ints = new ArrayList<>();
+	private final List<char[]> chars = new ArrayList<>();
+	private final List<double[]> doubles = new ArrayList<>();
+
+	// arrays handed out since acquire()
+	private int nextInt, nextChar, nextDouble;
+
+	private boolean busy;
+
+	// for a loop nested in a band that holds this one, on the same thread
+	private Scratch nested;
+
+	private Scratch() {
+	}
+
+	// the scratch of the calling thread, one level down for each band of a nested loop
+	static Scratch acquire() {
+		final SoftReference<Scratch> reference = SCRATCH.get();
+		Scratch scratch = reference == null ? null : reference.get();
+
+		if (scratch == null) {
+			scratch = new Scratch();
+			SCRATCH.set(new SoftReference<>(scratch));
+		}
+
+		while (scratch.busy) {
+			if (scratch.nested == null) {
+				scratch.nested = new Scratch();
+			}
+			scratch = scratch.nested;
+		}
+
+		scratch.busy = true;
+		scratch.nextInt = 0;
+		scratch.nextChar = 0;
+		scratch.nextDouble = 0;
+
+		return scratch;
+	}
+
+	void release() {
+		busy = false;
+	}
+
+	int[] ints(final int length) {
+		int[] array = nextInt < ints.size() ? ints.get(nextInt) : null;
+
+		if (array != null && array.length == length) {
+			Arrays.fill(array, 0);
+		} else {
+			array = new int[length];
+			keep(ints, nextInt, array);
+		}
+
+		nextInt++;
+		return array;
+	}
+
+	char[] chars(final int length) {
+		char[] array = nextChar < chars.size() ? chars.get(nextChar) : null;
+
+		if (array != null && array.length == length) {
+			Arrays.fill(array, (char) 0);
+		} else {
+			array = new char[length];
+			keep(chars, nextChar, array);
+		}
+
+		nextChar++;
+		return array;
+	}
+
+	double[] doubles(final int length) {
+		double[] array = nextDouble < doubles.size() ? doubles.get(nextDouble) : null;
+
+		if (array != null && array.length == length) {
+			Arrays.fill(array, 0);
+		} else {
+			array = new double[length];
+			keep(doubles, nextDouble, array);
+		}
+
+		nextDouble++;
+		return array;
+	}
+
+	private static <T> void keep(final List<T> arrays, final int index, final T array) {
+		if (index < arrays.size()) {
+			arrays.set(index, array);
+		} else {
+			arrays.add(array);
+		}
+	}
+
+}
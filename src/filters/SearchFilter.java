@@ -3,77 +3,680 @@ package filters;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntSupplier;
 
 public class SearchFilter extends BaseFilter {
 
+	public static final int HISTOGRAM = 0;
+	public static final int CORRELATION = 1;
+
+	// smallest pattern side at the coarsest level of the pyramid
+	private static final int MIN_PATTERN = 8;
+
+	// positions around a candidate searched again at the next finer level
+	private static final int REFINE = 2;
+
+	// 1 searches every position at full resolution, more levels search a pyramid coarse to fine
+	private int levels = 1;
+
+	// positions of the coarsest level refined at the finer ones
+	private int candidates = 8;
+
+	// correlation scores from -1 to 1, kept as integer distances from 0 to 2 SCALE
+	private static final int SCALE = 1 << 24;
+
+	private int method = HISTOGRAM;
+
 	public SearchFilter(BufferedImage image) {
 		super(image);
 	}
 
-	public BufferedImage findPattern(BufferedImage pattern) {
-		newimage = new BufferedImage(width, height, type);
+	public int getLevels() {
+		return levels;
+	}
+
+	public void setLevels(final int levels) {
+		this.levels = Math.max(1, levels);
+	}
 
+	public int getCandidates() {
+		return candidates;
+	}
+
+	public void setCandidates(final int candidates) {
+		this.candidates = Math.max(1, candidates);
+	}
+
+	public int getMethod() {
+		return method;
+	}
+
+	// HISTOGRAM compares the gray level histograms of the pattern and of every window, whatever their
+	// layout; CORRELATION compares the gray levels pixel by pixel with the normalized cross-correlation
+	// and ignores the number of levels
+	public void setMethod(final int method) {
+		if (method != HISTOGRAM && method != CORRELATION) {
+			throw new IllegalArgumentException("Unknown search method: " + method);
+		}
+
+		this.method = method;
+	}
+
+	public BufferedImage findPattern(BufferedImage pattern) {
 		// pattern
 		final int pwidth = pattern.getWidth();
 		final int pheight = pattern.getHeight();
 
 		GrayscaleFilter pfilter = new GrayscaleFilter(pattern);
-		final int[] phist = pfilter.histogram();
+		final int[] pgray = pfilter.levels();
 
 		// image
-		int[] hist;
 		GrayscaleFilter original = new GrayscaleFilter(image);
-
-		boolean found = false;
-		int lower = 0;
-
-		Region region = new Region();
+		final int[] gray = original.levels();
 
 		// search
-		for (int j = 0; j < height - pheight; j++) {
-			for (int i = 0; i < width - pwidth; i++) {
-				hist = original.histogram(i, j, pwidth, pheight);
+		Region region;
+		if (method == HISTOGRAM && levels > 1 && width > pwidth && height > pheight) {
+			region = pyramid(gray, pgray, pwidth, pheight);
+		} else {
+			final List<int[]> found = top(gray, pgray, pwidth, pheight, 1);
+			region = found.isEmpty() ? new Region() : region(found.get(0), pwidth, pheight);
+		}
 
-				int result = compareHistogram(hist, phist);
-				if (!found || result < lower) {
-					lower = result;
-					region.set(i, j, pwidth, pheight);
+		return drawRegions(Collections.singletonList(region));
+	}
 
-					found = true;
-				}
-			}
+	// the count positions that best match the pattern, best first, none of them overlapping a better
+	// one; every position is searched, whatever the number of levels
+	public List<Region> findPatterns(BufferedImage pattern, final int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("count must be at least 1: " + count);
 		}
 
-		// copy image
-		newimage.setData(image.getData());
+		final int pwidth = pattern.getWidth();
+		final int pheight = pattern.getHeight();
+		final int[] pgray = new GrayscaleFilter(pattern).levels();
+		final int[] gray = new GrayscaleFilter(image).levels();
 
-		for (int j = 0; j < height; j++) {
-			for (int i = 0; i < width; i++) {
-				newimage.setRGB(i, j, image.getRGB(i, j));
-			}
+		final List<Region> regions = new ArrayList<>();
+		for (int[] c : top(gray, pgray, pwidth, pheight, count)) {
+			regions.add(region(c, pwidth, pheight));
 		}
 
+		return regions;
+	}
+
+	// copy of the image with an oval around every region
+	public BufferedImage drawRegions(List<Region> regions) {
+		// copy image
+		newimage = createImage(getPixels());
+
 		// draw a circle
 		Graphics2D graphics = newimage.createGraphics();
 		graphics.setColor(Color.RED);
-		graphics.drawOval(region.x, region.y, region.w, region.h);
+		for (Region region : regions) {
+			graphics.drawOval(region.x, region.y, region.w, region.h);
+		}
 
 		return newimage;
 	}
 
-	private int compareHistogram(int[] hist, int[] hist2) {
-		int sum = 0;
-		for (int i = 0; i < hist.length; i++) {
-			sum += Math.abs(hist[i] - hist2[i]);
+	private interface Positions {
+		void visit(int i, int j, int distance);
+	}
+
+	private interface Scanner {
+		// distance of the positions of the rows [from, to) that may not exceed the threshold, in row order
+		void scan(int from, int to, IntSupplier threshold, Positions positions);
+	}
+
+	// the count best { i, j, distance } of the image for the current method
+	private List<int[]> top(final int[] gray, final int[] pgray, final int pw, final int ph, final int count) {
+		if (method == CORRELATION) {
+			// every position where the pattern fits
+			final int columns = width - pw + 1;
+			final int rows = height - ph + 1;
+
+			if (columns <= 0 || rows <= 0) {
+				return new ArrayList<>();
+			}
+
+			final int[] distances = correlation(gray, pgray, pw, ph);
+
+			return top(rows, columns, pw, ph, count, (from, to, threshold, positions) -> {
+				for (int j = from, p = from * columns; j < to; j++) {
+					for (int i = 0; i < columns; i++, p++) {
+						if (distances[p] <= threshold.getAsInt()) {
+							positions.visit(i, j, distances[p]);
+						}
+					}
+				}
+			});
+		}
+
+		// the last row and column are left out, as always
+		final int columns = width - pw;
+		final int rows = height - ph;
+
+		if (columns <= 0 || rows <= 0) {
+			return new ArrayList<>();
+		}
+
+		final int[] phist = histogram(pgray);
+
+		return top(rows, columns, pw, ph, count, (from, to, threshold, positions) -> scan(gray, width, columns,
+				phist, pw, ph, from, to, threshold, positions));
+	}
+
+	// the count best { i, j, distance } of the rows of positions, best first, each one the best position
+	// not overlapping the ones before it. The bands of rows are searched in parallel twice: first
+	// keeping the best ones of each band, which bounds the distance of the result (and is the result
+	// for a single one), then gathering every position within that bound, from which the result is
+	// picked in order.
+	private static List<int[]> top(final int rows, final int columns, final int pw, final int ph, final int count,
+			final Scanner scanner) {
+		final Found bands = new Found(columns);
+		FilterExecutor.forEachRow(rows, (from, to) -> {
+			final List<int[]> kept = new ArrayList<>();
+			scanner.scan(from, to, () -> kept.size() < count ? Integer.MAX_VALUE : kept.get(count - 1)[2],
+					(i, j, distance) -> offer(kept, i, j, distance, pw, ph, count));
+
+			synchronized (bands) {
+				for (int[] k : kept) {
+					bands.add(k[0], k[1], k[2]);
+				}
+			}
+		});
+
+		final List<int[]> bound = bands.pick(pw, ph, count);
+		if (count == 1) {
+			return bound;
+		}
+
+		int limit = bound.isEmpty() ? Integer.MAX_VALUE : bound.get(bound.size() - 1)[2];
+
+		while (true) {
+			final int threshold = limit;
+			final Found found = new Found(columns);
+
+			FilterExecutor.forEachRow(rows, (from, to) -> {
+				final Found band = new Found(columns);
+				scanner.scan(from, to, () -> threshold, (i, j, distance) -> {
+					if (distance <= threshold) {
+						band.add(i, j, distance);
+					}
+				});
+
+				synchronized (found) {
+					found.addAll(band);
+				}
+			});
+
+			final List<int[]> kept = found.pick(pw, ph, count);
+
+			// the positions over the bound may still be needed when some of the best ones overlap; the bound
+			// is raised a step at a time rather than gathering every position at once
+			if (kept.size() == count || threshold == Integer.MAX_VALUE) {
+				return kept;
+			}
+
+			limit = threshold >= Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : Math.max(1, 2 * threshold);
+		}
+	}
+
+	// positions { i, j, distance } packed in a long as distance << 32 | j * columns + i, which sorts
+	// them by distance then row order as compare() does, without an array per position: every position
+	// within the bound is gathered
+	private static final class Found {
+		private final int columns;
+		private long[] positions = new long[16];
+		private int size = 0;
+
+		Found(final int columns) {
+			this.columns = columns;
+		}
+
+		void add(final int i, final int j, final int distance) {
+			if (size == positions.length) {
+				positions = Arrays.copyOf(positions, 2 * size);
+			}
+			positions[size++] = (long) distance << 32 | (j * columns + i);
+		}
+
+		void addAll(final Found band) {
+			if (size + band.size > positions.length) {
+				positions = Arrays.copyOf(positions, Math.max(2 * positions.length, size + band.size));
+			}
+			System.arraycopy(band.positions, 0, positions, size, band.size);
+			size += band.size;
+		}
+
+		// the first count positions in order that overlap none before them
+		List<int[]> pick(final int pw, final int ph, final int count) {
+			Arrays.sort(positions, 0, size);
+
+			final List<int[]> kept = new ArrayList<>();
+			for (int n = 0; n < size && kept.size() < count; n++) {
+				final int i = (int) positions[n] % columns;
+				final int j = (int) positions[n] / columns;
+
+				boolean apart = true;
+				for (int m = 0; m < kept.size() && apart; m++) {
+					final int[] k = kept.get(m);
+					apart = Math.abs(k[0] - i) >= pw || Math.abs(k[1] - j) >= ph;
+				}
+
+				if (apart) {
+					kept.add(new int[] { i, j, (int) (positions[n] >>> 32) });
+				}
+			}
+
+			return kept;
 		}
-		return sum;
 	}
 
-	private class Region {
+	// distance of the positions of the rows [from, to) that may not exceed the threshold, in row order.
+	// Moving the window one column changes the distance by at most 2 ph, so a distance far above the
+	// threshold skips the next columns altogether, and a window counted from scratch is abandoned as
+	// soon as the rows still missing cannot bring it close enough to slide it instead.
+	private static void scan(final int[] gray, final int gw, final int columns, final int[] phist, final int pw,
+			final int ph, final int from, final int to, final IntSupplier threshold, final Positions positions) {
+		// one window for the band, counted again from the pattern histogram when it cannot slide
+		final HistogramDistance window = new HistogramDistance(phist);
+
+		for (int j = from; j < to; j++) {
+			boolean counted = false;
+			int i = 0;
+
+			while (i < columns) {
+				final int limit = threshold.getAsInt();
+
+				// distance of the window, or a lower bound of it if it was abandoned
+				int lower;
+				if (counted) {
+					lower = window.distance();
+				} else {
+					window.reset(phist);
+					counted = true;
+					lower = 0;
+
+					for (int y = 0; y < ph; y++) {
+						window.addRow(gray, gw, i, j + y, pw);
+						lower = window.distance() - (ph - 1 - y) * pw;
+
+						if (y < ph - 1 && lower > limit && skip(lower, limit, ph) >= pw / 2) {
+							counted = false;
+							break;
+						}
+					}
+				}
+
+				if (counted) {
+					positions.visit(i, j, lower);
+				}
+
+				final int skip = skip(lower, limit, ph);
+
+				if (counted && skip < pw / 2 && i + 1 < columns) {
+					window.removeColumn(gray, gw, i, j, ph);
+					window.addColumn(gray, gw, i + pw, j, ph);
+					i++;
+				} else {
+					counted = false;
+					i += skip + 1;
+				}
+			}
+		}
+	}
+
+	// positions after the one whose distance is at least lower that are all over the limit
+	private static int skip(final int lower, final int limit, final int ph) {
+		return lower > limit ? (lower - limit - 1) / (2 * ph) : 0;
+	}
+
+	// keeps the position, found after all the kept ones, if none of them overlapping it is better,
+	// dropping the ones it is better than
+	private static void offer(final List<int[]> kept, final int i, final int j, final int distance, final int pw,
+			final int ph, final int count) {
+		if (kept.size() == count && distance >= kept.get(count - 1)[2]) {
+			return;
+		}
+
+		// indexed, this runs for most positions and an iterator or a predicate would be allocated each time
+		for (int n = 0; n < kept.size(); n++) {
+			final int[] k = kept.get(n);
+			if (Math.abs(k[0] - i) < pw && Math.abs(k[1] - j) < ph && k[2] <= distance) {
+				return;
+			}
+		}
+
+		for (int n = kept.size() - 1; n >= 0; n--) {
+			final int[] k = kept.get(n);
+			if (Math.abs(k[0] - i) < pw && Math.abs(k[1] - j) < ph) {
+				kept.remove(n);
+			}
+		}
+
+		int n = kept.size();
+		while (n > 0 && kept.get(n - 1)[2] > distance) {
+			n--;
+		}
+		kept.add(n, new int[] { i, j, distance });
+
+		if (kept.size() > count) {
+			kept.remove(count);
+		}
+	}
+
+	// the histogram distance goes from 0, same histogram, to 2 w h, no gray level in common; the
+	// correlation is its distance to 1, from -1 to 1
+	private Region region(final int[] c, final int w, final int h) {
+		if (method == CORRELATION) {
+			return new Region(c[0], c[1], w, h, 1 - (double) c[2] / SCALE);
+		}
+
+		return new Region(c[0], c[1], w, h, 1 - c[2] / (2.0 * w * h));
+	}
+
+	// distance to 1 of the normalized cross-correlation of the pattern with the window at every position:
+	// sum (I - mean I) (P - mean P) / sqrt(sum (I - mean I)^2 sum (P - mean P)^2), 0 on a flat window or
+	// pattern. The numerator is the correlation of the image with the pattern minus its mean, computed
+	// through the FFT one output block of the correlator at a time, and the window sums of I and I^2
+	// come from integral images of the rows of that block.
+	private int[] correlation(final int[] gray, final int[] pgray, final int pw, final int ph) {
+		final int columns = width - pw + 1;
+		final int rows = height - ph + 1;
+		final int n = pw * ph;
+
+		long psum = 0, psum2 = 0;
+		for (int v : pgray) {
+			psum += v;
+			psum2 += v * v;
+		}
+
+		final double mean = (double) psum / n;
+		final double[] kernel = new double[n];
+		for (int p = 0; p < n; p++) {
+			kernel[p] = pgray[p] - mean;
+		}
+
+		// n^2 times the variance of the pattern, and of each window, are exact integers
+		final double penergy = (double) (n * psum2 - psum * psum) / n;
+
+		final Correlator correlator = new Correlator(kernel, pw, ph, Math.max(width, height));
+		final int band = correlator.blockHeight();
+		final int lines = Math.min(band, rows) + ph - 1;
+		final double[] src = new double[lines * width];
+		final long[] sum = new long[(lines + 1) * (width + 1)];
+		final long[] sum2 = new long[(lines + 1) * (width + 1)];
+		final int[] distances = new int[columns * rows];
+		final double[] products = new double[Math.min(band, rows) * columns];
+
+		for (int y0 = 0; y0 < rows; y0 += band) {
+			final int y1 = Math.min(y0 + band, rows);
+			final int bh = y1 - y0 + ph - 1;
+
+			for (int l = 0, t = 0; l < bh; l++) {
+				final int line = (y0 + l) * width;
+				final int s = (l + 1) * (width + 1);
+
+				long row = 0, row2 = 0;
+				for (int x = 0; x < width; x++, t++) {
+					final int v = gray[line + x];
+					src[t] = v;
+					row += v;
+					row2 += v * v;
+					sum[s + x + 1] = sum[s - width - 1 + x + 1] + row;
+					sum2[s + x + 1] = sum2[s - width - 1 + x + 1] + row2;
+				}
+			}
+
+			correlator.correlate(src, width, bh, products);
+			final int offset = y0 * columns;
+
+			FilterExecutor.forEachRow(y1 - y0, (from, to) -> {
+				for (int y = from; y < to; y++) {
+					final int top = y * (width + 1);
+					final int bottom = (y + ph) * (width + 1);
+
+					for (int x = 0, p = y * columns; x < columns; x++, p++) {
+						final long s = sum[bottom + x + pw] - sum[bottom + x] - sum[top + x + pw] + sum[top + x];
+						final long s2 = sum2[bottom + x + pw] - sum2[bottom + x] - sum2[top + x + pw] + sum2[top + x];
+						final long energy = n * s2 - s * s;
+
+						double score = 0;
+						if (energy > 0 && penergy > 0) {
+							score = products[p] / Math.sqrt(penergy * energy / n);
+							score = Math.max(-1, Math.min(1, score));
+						}
+
+						distances[offset + p] = (int) Math.round((1 - score) * SCALE);
+					}
+				}
+			});
+		}
+
+		return distances;
+	}
+
+	// by distance, then row order
+	private static int compare(final int[] a, final int[] b) {
+		if (a[2] != b[2]) {
+			return Integer.compare(a[2], b[2]);
+		}
+
+		return a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(a[0], b[0]);
+	}
+
+	// distance of the pw x ph window at every position of the columns x rows area from (x0, y0).
+	// The window histogram slides one column at a time, along the rows in alternating directions and
+	// down one row at the end of each, so every step adds and removes a single column or row instead
+	// of counting the whole window again.
+	private static void slide(final int[] gray, final int gw, final int x0, final int y0, final int columns,
+			final int rows, final int[] phist, final int pw, final int ph, final Positions positions) {
+		if (columns <= 0 || rows <= 0) {
+			return;
+		}
+
+		final HistogramDistance window = new HistogramDistance(phist);
+		for (int y = y0; y < y0 + ph; y++) {
+			window.addRow(gray, gw, x0, y, pw);
+		}
+
+		int i = x0;
+
+		for (int j = y0; j < y0 + rows; j++) {
+			if (j > y0) {
+				window.removeRow(gray, gw, i, j - 1, pw);
+				window.addRow(gray, gw, i, j + ph - 1, pw);
+			}
+
+			final boolean forward = (j - y0) % 2 == 0;
+
+			for (int n = 0; n < columns; n++) {
+				if (n > 0 && forward) {
+					window.removeColumn(gray, gw, i, j, ph);
+					window.addColumn(gray, gw, i + pw, j, ph);
+					i++;
+				} else if (n > 0) {
+					window.removeColumn(gray, gw, i + pw - 1, j, ph);
+					window.addColumn(gray, gw, i - 1, j, ph);
+					i--;
+				}
+
+				positions.visit(i, j, window.distance());
+			}
+		}
+	}
+
+	// coarse to fine search: every position is compared at the coarsest level of Gaussian pyramids of
+	// the image and the pattern, and only the best candidates, at least half a pattern apart, are
+	// searched again around their position at each finer level
+	private Region pyramid(final int[] gray, final int[] pgray, final int pwidth, final int pheight) {
+		final int[][] images = new int[levels][];
+		final int[][] patterns = new int[levels][];
+		final int[] iw = new int[levels], ih = new int[levels];
+		final int[] pw = new int[levels], ph = new int[levels];
+
+		images[0] = gray;
+		patterns[0] = pgray;
+		iw[0] = width;
+		ih[0] = height;
+		pw[0] = pwidth;
+		ph[0] = pheight;
+
+		int top = 0;
+		while (top + 1 < levels) {
+			final int w = (iw[top] + 1) / 2, h = (ih[top] + 1) / 2;
+			final int w2 = (pw[top] + 1) / 2, h2 = (ph[top] + 1) / 2;
+
+			if (w2 < MIN_PATTERN || h2 < MIN_PATTERN || w <= w2 || h <= h2) {
+				break;
+			}
+
+			images[top + 1] = reduce(images[top], iw[top], ih[top]);
+			patterns[top + 1] = reduce(patterns[top], pw[top], ph[top]);
+			iw[top + 1] = w;
+			ih[top + 1] = h;
+			pw[top + 1] = w2;
+			ph[top + 1] = h2;
+			top++;
+		}
+
+		if (top == 0) {
+			return region(top(gray, pgray, pwidth, pheight, 1).get(0), pwidth, pheight);
+		}
+
+		// every position of the coarsest level, sorted by distance then row order
+		final int columns = iw[top] - pw[top];
+		final long[] order = new long[columns * (ih[top] - ph[top])];
+		slide(images[top], iw[top], 0, 0, columns, ih[top] - ph[top], histogram(patterns[top]), pw[top], ph[top],
+				(i, j, distance) -> order[j * columns + i] = (long) distance << 32 | (j * columns + i));
+		Arrays.sort(order);
+
+		final List<int[]> found = new ArrayList<>();
+		for (int n = 0; n < order.length && found.size() < candidates; n++) {
+			final int i = (int) order[n] % columns;
+			final int j = (int) order[n] / columns;
+
+			boolean apart = true;
+			for (int[] c : found) {
+				if (Math.abs(c[0] - i) < (pw[top] + 1) / 2 && Math.abs(c[1] - j) < (ph[top] + 1) / 2) {
+					apart = false;
+					break;
+				}
+			}
+
+			if (apart) {
+				found.add(new int[] { i, j, (int) (order[n] >>> 32) });
+			}
+		}
+
+		// each candidate moves to the best position around it at the next level
+		for (int level = top - 1; level >= 0; level--) {
+			final int[] phist = histogram(patterns[level]);
+
+			for (int[] c : found) {
+				c[0] *= 2;
+				c[1] *= 2;
+				refine(images[level], iw[level], ih[level], phist, pw[level], ph[level], c);
+			}
+		}
+
+		final int[] best = Collections.min(found, SearchFilter::compare);
+
+		return region(best, pwidth, pheight);
+	}
+
+	// moves the candidate { i, j, distance } to the best position within REFINE of it, again and
+	// again while that keeps getting closer, down to a local minimum of the distance
+	private static void refine(final int[] gray, final int gw, final int gh, final int[] phist, final int pw,
+			final int ph, final int[] c) {
+		final int columns = gw - pw;
+		final int rows = gh - ph;
+
+		c[0] = Math.min(c[0], columns - 1);
+		c[1] = Math.min(c[1], rows - 1);
+		c[2] = Integer.MAX_VALUE;
+
+		boolean moved = true;
+		while (moved) {
+			final int x0 = Math.max(0, c[0] - REFINE), x1 = Math.min(columns - 1, c[0] + REFINE);
+			final int y0 = Math.max(0, c[1] - REFINE), y1 = Math.min(rows - 1, c[1] + REFINE);
+			final int[] best = { c[0], c[1], c[2] };
+
+			slide(gray, gw, x0, y0, x1 - x0 + 1, y1 - y0 + 1, phist, pw, ph, (i, j, distance) -> {
+				if (distance < best[2] || (distance == best[2] && (j < best[1] || (j == best[1] && i < best[0])))) {
+					best[0] = i;
+					best[1] = j;
+					best[2] = distance;
+				}
+			});
+
+			moved = best[0] != c[0] || best[1] != c[1];
+			System.arraycopy(best, 0, c, 0, 3);
+		}
+	}
+
+	// next level of a Gaussian pyramid: the 5 tap binomial filter, then every other pixel
+	private static int[] reduce(final int[] plane, final int w, final int h) {
+		final int w2 = (w + 1) / 2, h2 = (h + 1) / 2;
+		final int[] weights = { 1, 4, 6, 4, 1 };
+
+		// horizontal pass on the kept columns
+		final int[] half = new int[w2 * h];
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w2; x++) {
+				int sum = 0;
+				for (int k = 0; k < 5; k++) {
+					sum += weights[k] * plane[y * w + clamp(2 * x + k - 2, 0, w - 1)];
+				}
+				half[y * w2 + x] = sum;
+			}
+		}
+
+		final int[] reduced = new int[w2 * h2];
+		for (int y = 0; y < h2; y++) {
+			for (int x = 0; x < w2; x++) {
+				int sum = 0;
+				for (int k = 0; k < 5; k++) {
+					sum += weights[k] * half[clamp(2 * y + k - 2, 0, h - 1) * w2 + x];
+				}
+				reduced[y * w2 + x] = (sum + 128) >> 8;
+			}
+		}
+
+		return reduced;
+	}
+
+	private static int[] histogram(final int[] gray) {
+		final int[] hist = new int[256];
+		for (int v : gray) {
+			hist[v]++;
+		}
+
+		return hist;
+	}
+
+	// a match of the pattern, with its score from 0 to 1, 1 being the best
+	public static class Region {
 		private int x, y, w, h;
+		private double score;
 
 		public Region() {
-			set(0, 0, 0, 0);
+			this(0, 0, 0, 0, 0);
+		}
+
+		public Region(int x, int y, int w, int h, double score) {
+			this.x = x;
+			this.y = y;
+			this.w = w;
+			this.h = h;
+			this.score = score;
 		}
 
 		public int getX() {
@@ -92,6 +695,10 @@ public class SearchFilter extends BaseFilter {
 			return h;
 		}
 
+		public double getScore() {
+			return score;
+		}
+
 		public void set(int x, int y, int w, int h) {
 			this.x = x;
 			this.y = y;
@@ -101,7 +708,8 @@ public class SearchFilter extends BaseFilter {
 
 		@Override
 		public String toString() {
-			return String.format("x: %d, y: %d, w: %d, h: %d\n", getX(), getY(), getWidth(), getHeight());
+			return String.format("x: %d, y: %d, w: %d, h: %d, score: %.4f\n", getX(), getY(), getWidth(), getHeight(),
+					getScore());
 		}
 
 	}
@@ -7,12 +7,19 @@ import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 
+import filters.FilterExecutor;
+import filters.GeometricPipeline;
+import filters.PointPipeline;
 import gui.components.JScrollPaneImage;
 import gui.menu.MenuFileActions;
 import gui.menu.MenuFilterActions;
@@ -23,6 +30,7 @@ import gui.menu.MenuFilterActions.Grayscale;
 import gui.menu.MenuFilterActions.Logic;
 import gui.menu.MenuGeometricActions;
 import gui.menu.MenuGeometricActions.Flip;
+import gui.menu.MenuGeometricActions.Rotate;
 
 @SuppressWarnings("serial")
 public class ImageEditor extends JDialog {
@@ -31,41 +39,203 @@ public class ImageEditor extends JDialog {
 
     private JScrollPaneImage imagePanel = null;
 
-    private List<BufferedImage> images = new ArrayList<>();
+    // every image of the session, with the geometric steps each was resampled by from an earlier one
+    private ImageHistory history = new ImageHistory();
     private int imageIndex = -1;
     private File file;
 
+    // point operations recorded from the filter menus, applied later as a single fused pass
+    private PointPipeline chain = new PointPipeline();
+    private boolean recording = false;
+
+    // the filter running in the background, null if there is none
+    private FilterExecutor.Job job;
+    private JPanel jobPanel;
+    private JProgressBar jobProgress;
+    private Timer jobTimer;
+
     public void setImage(BufferedImage image) {
         setImage(image, true);
     }
 
     public void setImage(BufferedImage image, boolean addToList) {
+        setImage(image, addToList, null, null, 0);
+    }
+
+    // adds one more geometric step: the image shown is the source of the chain resampled once, not the
+    // previous image resampled again
+    public void setImage(GeometricPipeline transform) {
+        run(transform::apply, image -> setImage(image, true, null, transform, 0));
+    }
+
+    // applies an operation to the current image in the background; the history records the operation,
+    // and its result only when it is a keyframe
+    public void apply(Operation operation) {
+        BufferedImage source = getImage();
+        long[] cost = new long[1];
+
+        run(() -> {
+            long start = System.nanoTime();
+            BufferedImage image = operation.apply(source);
+            cost[0] = System.nanoTime() - start;
+            return image;
+        }, image -> setImage(image, true, operation, null, cost[0]));
+    }
+
+    public boolean isRunning() {
+        return job != null;
+    }
+
+    // stops the filter running in the background, the image stays as it was
+    public void cancel() {
+        if (job != null) {
+            job.cancel();
+        }
+    }
+
+    // computes an image off the event dispatch thread, with the menus disabled and the progress shown,
+    // then hands it to done on the event dispatch thread; false if another one is still running
+    private boolean run(Supplier<BufferedImage> work, Consumer<BufferedImage> done) {
+        if (job != null) {
+            return false;
+        }
+
+        FilterExecutor.Job current = job = new FilterExecutor.Job();
+        setRunning(true);
+
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() {
+                return FilterExecutor.run(current, work);
+            }
+
+            @Override
+            protected void done() {
+                job = null;
+                setRunning(false);
+
+                try {
+                    done.accept(get());
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof CancellationException)) {
+                        e.getCause().printStackTrace();
+                        JOptionPane.showMessageDialog(ImageEditor.this, String.valueOf(e.getCause()), "Erro",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+
+        return true;
+    }
+
+    private void setRunning(boolean running) {
+        for (Component menu : getJMenuBar().getComponents()) {
+            menu.setEnabled(!running);
+        }
+
+        if (jobPanel == null) {
+            jobProgress = new JProgressBar(0, 1000);
+            jobProgress.setStringPainted(true);
+
+            JButton cancel = new JButton("Cancelar");
+            cancel.addActionListener(e -> cancel());
+
+            jobPanel = new JPanel(new BorderLayout(4, 0));
+            jobPanel.add(jobProgress, BorderLayout.CENTER);
+            jobPanel.add(cancel, BorderLayout.EAST);
+            add(jobPanel, BorderLayout.SOUTH);
+
+            // rows done over the rows of the loops started so far, read from the job a few times a second
+            jobTimer = new Timer(100, e -> {
+                FilterExecutor.Job current = job;
+                if (current != null && current.getTotal() > 0) {
+                    jobProgress.setValue((int) (1000 * current.getDone() / current.getTotal()));
+                }
+            });
+        }
+
+        jobProgress.setValue(0);
+        jobPanel.setVisible(running);
+        if (running) {
+            jobTimer.start();
+        } else {
+            jobTimer.stop();
+        }
+        getRootPane().revalidate();
+    }
+
+    private void setImage(BufferedImage image, boolean addToList, Operation operation, GeometricPipeline transform,
+            long cost) {
         if (imagePanel == null) {
             imagePanel = new JScrollPaneImage(image);
             add(imagePanel);
         } else
             imagePanel.setImage(image);
         if (addToList) {
-            while (imageIndex < images.size() - 1) {
-                images.removeLast();
-            }
-            images.add(image);
+            history.truncate(imageIndex + 1);
+            history.add(image, operation, transform, cost);
             imageIndex++;
         }
         getRootPane().updateUI();
     }
 
+    // moves in the history; a state that has to be computed again is computed in the background
     public boolean setImage(int index) {
-        if (index < 0 || index >= images.size())
+        // the history is locked while a state is computed, do not wait for it here
+        if (job != null || index < 0 || index >= history.size())
             return false;
-        setImage(images.get(index), false);
-        return true;
+        return run(() -> history.get(index), image -> {
+            setImage(image, false);
+            imageIndex = index;
+        });
     }
 
     public BufferedImage getImage() {
         return imagePanel.getImage();
     }
 
+    public Rectangle getVisibleImageRect() {
+        return imagePanel.getVisibleImageRect();
+    }
+
+    public ImageHistory getHistory() {
+        return history;
+    }
+
+    // a copy of the geometric steps behind the current image, to add the next one to
+    public GeometricPipeline getTransform() {
+        GeometricPipeline transform = imageIndex >= 0 ? history.getTransform(imageIndex) : null;
+        if (transform == null || !history.isCurrent(imageIndex, getImage())) {
+            return new GeometricPipeline(getImage());
+        }
+        return new GeometricPipeline(transform);
+    }
+
+    public PointPipeline getChain() {
+        return chain;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    // starting a recording discards the previous chain
+    public void setRecording(boolean recording) {
+        if (recording && !this.recording) {
+            chain = new PointPipeline();
+        }
+        this.recording = recording;
+    }
+
+    public void record(PointPipeline step) {
+        if (recording) {
+            chain.then(step);
+        }
+    }
+
     public ImageEditor(Window window, File file) {
         super(window);
         setModal(true);
@@ -91,6 +261,13 @@ public class ImageEditor extends JDialog {
         }
     }
 
+    @Override
+    public void dispose() {
+        cancel();
+        history.clear();
+        super.dispose();
+    }
+
     public static void main(String[] args) {
         ImageEditor jfImageEditor = new ImageEditor(null, null);
         jfImageEditor.setVisible(true);
@@ -127,7 +304,7 @@ public class ImageEditor extends JDialog {
         JMenuItem undoItem = new JMenuItem(new AbstractAction("Undo") {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (setImage(imageIndex - 1)) imageIndex--;
+                setImage(imageIndex - 1);
             }
         });
         undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
@@ -137,7 +314,7 @@ public class ImageEditor extends JDialog {
         JMenuItem redoItem = new JMenuItem(new AbstractAction("Redo") {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (setImage(imageIndex + 1)) imageIndex++;
+                setImage(imageIndex + 1);
             }
         });
         redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
@@ -322,6 +499,43 @@ public class ImageEditor extends JDialog {
         jMenuFiltersMedian.addActionListener(new MenuFilterActions(this, MenuFilterActions.MEDIAN));
         jMenuFilters.add(jMenuFiltersMedian);
 
+        // filters -> chain
+        JMenu jMenuFiltersChain = new JMenu("Cadeia");
+
+        final JCheckBoxMenuItem jMenuFiltersChainRecord = new JCheckBoxMenuItem("Gravar");
+        final JMenuItem jMenuFiltersChainApply = new JMenuItem("Aplicar");
+
+        jMenuFiltersChainRecord.addActionListener(new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setRecording(jMenuFiltersChainRecord.isSelected());
+            }
+        });
+        jMenuFiltersChainApply.addActionListener(new MenuFilterActions(this, MenuFilterActions.CHAIN));
+
+        // show the recorded steps in the menu
+        jMenuFiltersChain.addMenuListener(new MenuListener() {
+            @Override
+            public void menuSelected(MenuEvent e) {
+                jMenuFiltersChainApply.setEnabled(!chain.isEmpty());
+                jMenuFiltersChainApply.setToolTipText(chain.isEmpty() ? null : chain.toString());
+                jMenuFiltersChainApply.setText("Aplicar (" + chain.size() + " passos)");
+            }
+
+            @Override
+            public void menuDeselected(MenuEvent e) {
+            }
+
+            @Override
+            public void menuCanceled(MenuEvent e) {
+            }
+        });
+
+        jMenuFiltersChain.add(jMenuFiltersChainRecord);
+        jMenuFiltersChain.add(jMenuFiltersChainApply);
+
+        jMenuFilters.add(jMenuFiltersChain);
+
         jMenuBar.add(jMenuFilters);
 
         // geometric
@@ -355,6 +569,23 @@ public class ImageEditor extends JDialog {
 
         jMenuGeometric.add(jMenuGeometricMirror);
 
+        // menu -> geometric -> turn
+        JMenu jMenuGeometricTurn = new JMenu("Girar");
+
+        JMenuItem jMenuGeometricTurnClockwise = new JMenuItem("90° horário");
+        JMenuItem jMenuGeometricTurnHalf = new JMenuItem("180°");
+        JMenuItem jMenuGeometricTurnCounterclockwise = new JMenuItem("90° anti-horário");
+
+        jMenuGeometricTurnClockwise.addActionListener(menuGeometricActions.new Rotate(Rotate.CLOCKWISE));
+        jMenuGeometricTurnHalf.addActionListener(menuGeometricActions.new Rotate(Rotate.HALF_TURN));
+        jMenuGeometricTurnCounterclockwise.addActionListener(menuGeometricActions.new Rotate(Rotate.COUNTERCLOCKWISE));
+
+        jMenuGeometricTurn.add(jMenuGeometricTurnClockwise);
+        jMenuGeometricTurn.add(jMenuGeometricTurnHalf);
+        jMenuGeometricTurn.add(jMenuGeometricTurnCounterclockwise);
+
+        jMenuGeometric.add(jMenuGeometricTurn);
+
         jMenuBar.add(jMenuGeometric);
 
     }
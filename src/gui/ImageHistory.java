@@ -0,0 +1,506 @@
+package gui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import filters.GeometricPipeline;
+
+// The states of the editor history, as a log of the operations that made them with full images, the
+// keyframes, only every few steps, after an expensive operation or where no operation can make the state
+// again. Any other state is computed again when it is needed: by the exact inverses of the operations
+// after it when they all have one, else by replaying the operations from the nearest keyframe before it.
+//
+// The keyframes are held within a memory budget. The ones nearest to the current state stay as they are;
+// when the history grows over the budget, the farthest ones are deflated, and once all but the current
+// one are, the farthest compressed ones move to temporary files. Both happen on a background thread, so
+// an edit does not wait for them and the budget can be exceeded until they are done. get() brings any
+// state back as an image of the same type and the same pixels.
+public class ImageHistory {
+
+    // pixel rows deflated or inflated at a time
+    private static final int BAND = 1 << 20;
+
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "image-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Entry> entries = new ArrayList<>();
+    private int current = -1;
+
+    private long budget = Long.getLong("editor.history.budget", Runtime.getRuntime().maxMemory() / 4);
+
+    // most operations replayed to get a state back
+    private int interval = Integer.getInteger("editor.history.interval", 8);
+
+    // operations slower than this, in nanoseconds, are followed by a keyframe
+    private long expensive = Long.getLong("editor.history.expensive", 200) * 1000000;
+
+    // in-memory bytes: the pixels of the images held plus the compressed states
+    private long used = 0;
+
+    private static class Entry {
+        // the image, of the current state or of a keyframe
+        BufferedImage image;
+        boolean keyframe;
+
+        // how the state was made from the previous one, null if it cannot be made again
+        Operation operation;
+        GeometricPipeline transform;
+
+        // to rebuild the image once it is compressed
+        ColorModel colorModel;
+        SampleModel sampleModel;
+        boolean premultiplied;
+        long size;
+
+        byte[] compressed;
+        File file;
+
+        // handed to the worker to be compressed or spilled
+        boolean pending;
+        // could not be written to disk, stays compressed in memory
+        boolean pinned;
+        boolean removed;
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        balance();
+    }
+
+    public synchronized int getInterval() {
+        return interval;
+    }
+
+    public synchronized void setInterval(int interval) {
+        this.interval = Math.max(1, interval);
+    }
+
+    // in milliseconds
+    public synchronized long getExpensive() {
+        return expensive / 1000000;
+    }
+
+    public synchronized void setExpensive(long expensive) {
+        this.expensive = expensive * 1000000;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // memory held by the history, the current image included
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    // drops the states from index on, as a new edit after an undo does
+    public synchronized void truncate(int index) {
+        while (entries.size() > index) {
+            Entry entry = entries.remove(entries.size() - 1);
+            entry.removed = true;
+            used -= held(entry);
+            if (entry.file != null) {
+                entry.file.delete();
+            }
+        }
+        current = Math.min(current, entries.size() - 1);
+    }
+
+    // appends a state and makes it the current one; operation made it from the current state in cost
+    // nanoseconds, transform from an earlier state
+    public synchronized void add(BufferedImage image, Operation operation, GeometricPipeline transform, long cost) {
+        Entry entry = new Entry();
+        entry.image = image;
+        entry.operation = operation;
+        entry.transform = transform;
+        entry.colorModel = image.getColorModel();
+        entry.sampleModel = image.getSampleModel().createCompatibleSampleModel(image.getWidth(), image.getHeight());
+        entry.premultiplied = image.isAlphaPremultiplied();
+        entry.size = (long) image.getWidth() * image.getHeight() * entry.sampleModel.getNumDataElements()
+                * bytes(entry.sampleModel.getTransferType());
+
+        int steps = 0;
+        for (int i = entries.size() - 1; i >= 0 && !entries.get(i).keyframe; i--) {
+            steps++;
+        }
+        entry.keyframe = operation == null || cost >= expensive || steps + 1 >= interval;
+
+        // the source of geometric steps is held by them anyway, and their next steps are composed on it
+        if (transform != null) {
+            for (Entry other : entries) {
+                if (other.image == transform.getSource()) {
+                    other.keyframe = true;
+                }
+            }
+        }
+
+        entries.add(entry);
+        used += entry.size;
+        leave(entries.size() - 1);
+
+        balance();
+    }
+
+    // the image of a state, restored if it was compressed or computed again if it was not kept, which
+    // becomes the current one
+    public synchronized BufferedImage get(int index) {
+        Entry entry = entries.get(index);
+
+        // whatever the worker does with it now is discarded
+        entry.pending = false;
+
+        if (entry.image == null) {
+            BufferedImage image = entry.compressed != null || entry.file != null ? restore(entry) : rebuild(index);
+
+            used -= held(entry);
+            entry.image = image;
+            entry.compressed = null;
+            entry.pinned = false;
+            if (entry.file != null) {
+                entry.file.delete();
+                entry.file = null;
+            }
+            used += entry.size;
+        }
+
+        leave(index);
+        balance();
+
+        return entry.image;
+    }
+
+    // makes index the current state, dropping the image of the one left unless it is a keyframe
+    private void leave(int index) {
+        if (current >= 0 && current != index && current < entries.size()) {
+            Entry entry = entries.get(current);
+            if (!entry.keyframe && entry.image != null) {
+                entry.image = null;
+                used -= entry.size;
+            }
+        }
+        current = index;
+    }
+
+    // a state that is not kept, from the current one or from a keyframe
+    private BufferedImage rebuild(int index) {
+        BufferedImage image = entries.get(current).image;
+
+        // back from the current state, each operation undone by its inverse
+        boolean invertible = index < current;
+        for (int i = index + 1; invertible && i <= current; i++) {
+            // a state opened or made by geometric steps has no operation, it is a keyframe to replay from
+            Operation operation = entries.get(i).operation;
+            invertible = operation != null && operation.isInvertible();
+        }
+        if (invertible) {
+            for (int i = current; i > index; i--) {
+                image = entries.get(i).operation.invert(image);
+            }
+            return image;
+        }
+
+        // forward from the nearest state held before it
+        int from = index - 1;
+        while (from != current && !stored(entries.get(from))) {
+            from--;
+        }
+
+        image = from == current ? image : image(entries.get(from));
+        for (int i = from + 1; i <= index; i++) {
+            image = entries.get(i).operation.apply(image);
+        }
+        return image;
+    }
+
+    private static boolean stored(Entry entry) {
+        return entry.image != null || entry.compressed != null || entry.file != null;
+    }
+
+    // the image of a state held, without restoring it in the history
+    private BufferedImage image(Entry entry) {
+        return entry.image != null ? entry.image : restore(entry);
+    }
+
+    // the operation that made a state, null for the keyframes nothing can make again
+    public synchronized Operation getOperation(int index) {
+        return entries.get(index).operation;
+    }
+
+    // whether image is the one held for a state, without restoring or computing anything
+    public synchronized boolean isCurrent(int index, BufferedImage image) {
+        return entries.get(index).image == image;
+    }
+
+    // the geometric steps the state was made by, null if it was not or their source is no longer held
+    public synchronized GeometricPipeline getTransform(int index) {
+        return entries.get(index).transform;
+    }
+
+    // deletes the temporary files
+    public void clear() {
+        truncate(0);
+    }
+
+    private long held(Entry entry) {
+        if (entry.image != null) {
+            return entry.size;
+        }
+        return entry.compressed != null ? entry.compressed.length : 0;
+    }
+
+    // hands states to the worker, farthest from the current one first, until what is left fits the budget
+    private void balance() {
+        long expected = used;
+        for (Entry entry : entries) {
+            if (entry.pending) {
+                expected -= held(entry);
+            }
+        }
+
+        while (expected > budget) {
+            // the image farthest from the current state, else the compressed state still in memory farthest from it
+            Entry farthest = null;
+            for (boolean images : new boolean[] { true, false }) {
+                int distance = 0;
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    boolean candidate = images ? entry.image != null : entry.compressed != null && !entry.pinned;
+                    if (i != current && candidate && !entry.pending && Math.abs(i - current) > distance) {
+                        farthest = entry;
+                        distance = Math.abs(i - current);
+                    }
+                }
+                if (farthest != null) {
+                    break;
+                }
+            }
+
+            if (farthest == null) {
+                return;
+            }
+
+            Entry entry = farthest;
+            entry.pending = true;
+            expected -= held(entry);
+            WORKER.execute(() -> demote(entry));
+        }
+    }
+
+    // on the worker: compresses the image of the entry, or writes its compressed state to a file
+    private void demote(Entry entry) {
+        BufferedImage image;
+        byte[] compressed;
+        synchronized (this) {
+            if (!entry.pending) {
+                return;
+            }
+            image = entry.image;
+            compressed = entry.compressed;
+        }
+
+        if (image != null) {
+            compressed = compress(image, entry.sampleModel);
+
+            synchronized (this) {
+                if (entry.pending && !entry.removed) {
+                    // the chains started on this image would keep it in memory, their next steps start over
+                    for (Entry other : entries) {
+                        if (other.transform != null && other.transform.getSource() == image) {
+                            other.transform = null;
+                        }
+                    }
+
+                    entry.compressed = compressed;
+                    entry.image = null;
+                    used += compressed.length - entry.size;
+                }
+                entry.pending = false;
+                balance();
+            }
+            return;
+        }
+
+        File file = null;
+        try {
+            file = File.createTempFile("history", ".bin");
+            file.deleteOnExit();
+            Files.write(file.toPath(), compressed);
+        } catch (IOException e) {
+            if (file != null) {
+                file.delete();
+            }
+            synchronized (this) {
+                entry.pinned = true;
+                entry.pending = false;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            if (entry.pending && !entry.removed) {
+                entry.file = file;
+                entry.compressed = null;
+                used -= compressed.length;
+            } else {
+                file.delete();
+            }
+            entry.pending = false;
+            balance();
+        }
+    }
+
+    private static byte[] compress(BufferedImage image, SampleModel model) {
+        Raster raster = image.getRaster();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int rows = Math.max(1, BAND / Math.max(1, width * model.getNumDataElements()));
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+
+        for (int y = 0; y < height; y += rows) {
+            int h = Math.min(rows, height - y);
+            deflater.setInput(toBytes(raster.getDataElements(0, y, width, h, null)));
+            while (!deflater.needsInput()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        return out.toByteArray();
+    }
+
+    private BufferedImage restore(Entry entry) {
+        byte[] compressed = entry.compressed;
+        if (compressed == null) {
+            try {
+                compressed = Files.readAllBytes(entry.file.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        SampleModel model = entry.sampleModel;
+        WritableRaster raster = Raster.createWritableRaster(model, null);
+        int width = model.getWidth();
+        int height = model.getHeight();
+        int rows = Math.max(1, BAND / Math.max(1, width * model.getNumDataElements()));
+        int bytes = bytes(model.getTransferType());
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+
+        try {
+            for (int y = 0; y < height; y += rows) {
+                int h = Math.min(rows, height - y);
+                byte[] band = new byte[width * h * model.getNumDataElements() * bytes];
+                for (int n = 0; n < band.length;) {
+                    int read = inflater.inflate(band, n, band.length - n);
+                    if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new DataFormatException("Truncated history state");
+                    }
+                    n += read;
+                }
+                raster.setDataElements(0, y, width, h, fromBytes(band, model.getTransferType()));
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+
+        return new BufferedImage(entry.colorModel, raster, entry.premultiplied, null);
+    }
+
+    // size of a data element of the given DataBuffer type
+    private static int bytes(int type) {
+        return DataBuffer.getDataTypeSize(type) / 8;
+    }
+
+    private static byte[] toBytes(Object data) {
+        if (data instanceof byte[]) {
+            return (byte[]) data;
+        }
+        if (data instanceof short[]) {
+            short[] values = (short[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * 2);
+            buffer.asShortBuffer().put(values);
+            return buffer.array();
+        }
+        if (data instanceof int[]) {
+            int[] values = (int[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+            buffer.asIntBuffer().put(values);
+            return buffer.array();
+        }
+        if (data instanceof float[]) {
+            float[] values = (float[]) data;
+            ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+            buffer.asFloatBuffer().put(values);
+            return buffer.array();
+        }
+        double[] values = (double[]) data;
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8);
+        buffer.asDoubleBuffer().put(values);
+        return buffer.array();
+    }
+
+    private static Object fromBytes(byte[] bytes, int type) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        switch (type) {
+        case DataBuffer.TYPE_BYTE:
+            return bytes;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT: {
+            short[] values = new short[bytes.length / 2];
+            buffer.asShortBuffer().get(values);
+            return values;
+        }
+        case DataBuffer.TYPE_INT: {
+            int[] values = new int[bytes.length / 4];
+            buffer.asIntBuffer().get(values);
+            return values;
+        }
+        case DataBuffer.TYPE_FLOAT: {
+            float[] values = new float[bytes.length / 4];
+            buffer.asFloatBuffer().get(values);
+            return values;
+        }
+        default: {
+            double[] values = new double[bytes.length / 8];
+            buffer.asDoubleBuffer().get(values);
+            return values;
+        }
+        }
+    }
+
+}
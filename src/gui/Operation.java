@@ -0,0 +1,49 @@
+package gui;
+
+import java.awt.image.BufferedImage;
+import java.util.function.UnaryOperator;
+
+// An edit of the image as the history records it: a filter with its parameters, deterministic, so the
+// state it made can be computed again from the previous one, and its exact inverse when there is one.
+public class Operation {
+
+    private final String name;
+    private final UnaryOperator<BufferedImage> function;
+    private final UnaryOperator<BufferedImage> inverse;
+
+    public Operation(String name, UnaryOperator<BufferedImage> function) {
+        this(name, function, null);
+    }
+
+    // inverse must give back exactly the pixels function was applied to
+    public Operation(String name, UnaryOperator<BufferedImage> function, UnaryOperator<BufferedImage> inverse) {
+        this.name = name;
+        this.function = function;
+        this.inverse = inverse;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BufferedImage apply(BufferedImage image) {
+        return function.apply(image);
+    }
+
+    public boolean isInvertible() {
+        return inverse != null;
+    }
+
+    public BufferedImage invert(BufferedImage image) {
+        if (inverse == null) {
+            throw new UnsupportedOperationException(name + " has no inverse");
+        }
+        return inverse.apply(image);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -7,30 +7,161 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import filters.FilterExecutor;
+import filters.GeometricFilter;
 
 public class JScrollPaneImage extends JScrollPane {
+    // side of the square pieces the image is drawn in, and of the smallest level of the pyramid
+    private static final int TILE = 256;
+
+    // transparency background, one period of the checkerboard drawn once and repeated as a texture
+    private static final BufferedImage CHECKER = checker(32);
+
+    // wheel events are applied at most once per frame
+    private static final int FRAME = 16;
+
+    // after this long without zooming or dragging the image is drawn again with a smooth interpolation
+    private static final int IDLE = 300;
+
     private BufferedImage image;
     private Canvas canvas;
 
+    // the image halved again and again, level 0 being the image itself; built in the background
+    private final transient List<BufferedImage> levels = new ArrayList<>();
+    private transient FilterExecutor.Job pyramid;
+
     public JScrollPaneImage(BufferedImage image) {
         setViewportView(canvas = new Canvas());
         setImage(image);
     }
 
+    private static BufferedImage checker(int size) {
+        BufferedImage checker = new BufferedImage(2 * size, 2 * size, BufferedImage.TYPE_INT_RGB);
+        Graphics g = checker.getGraphics();
+        g.setColor(new Color(230, 230, 230));
+        g.fillRect(0, 0, 2 * size, 2 * size);
+        g.setColor(new Color(106, 106, 106));
+        g.fillRect(0, 0, size, size);
+        g.fillRect(size, size, size, size);
+        g.dispose();
+        return checker;
+    }
+
     public BufferedImage getImage() {
         return image;
     }
 
+    // time the last repaint of the canvas took, in nanoseconds
+    public long getLastPaintTime() {
+        return canvas.lastPaintTime;
+    }
+
+    // mean time of the repaints of the canvas so far, in nanoseconds
+    public double getAveragePaintTime() {
+        return canvas.paintCount == 0 ? 0 : (double) canvas.totalPaintTime / canvas.paintCount;
+    }
+
+    public long getPaintCount() {
+        return canvas.paintCount;
+    }
+
+    // the part of the image shown in the viewport, in image pixels
+    public Rectangle getVisibleImageRect() {
+        Rectangle view = canvas.getVisibleRect();
+        Dimension size = canvas.getPreferredSize();
+        int dx = 0, dy = 0;
+        if (canvas.getWidth() >= size.width && canvas.getHeight() >= size.height) {
+            dx = canvas.getWidth() / 2 - size.width / 2;
+            dy = canvas.getHeight() / 2 - size.height / 2;
+        }
+
+        double zoom = canvas.zoom;
+        int x = (int) Math.floor((view.x - dx) / zoom);
+        int y = (int) Math.floor((view.y - dy) / zoom);
+        Rectangle rect = new Rectangle(x, y, (int) Math.ceil(view.width / zoom) + 1,
+                (int) Math.ceil(view.height / zoom) + 1);
+        return rect.intersection(new Rectangle(image.getWidth(), image.getHeight()));
+    }
+
     public void setImage(BufferedImage image) {
         if (this.image == null) {
             canvas.setSize(image.getWidth(), image.getHeight());
             canvas.setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
+        } else if (image.getWidth() != this.image.getWidth() || image.getHeight() != this.image.getHeight()) {
+            // the tiles are laid out from the image size, keep the canvas at the same zoom of the new one
+            Dimension d = new Dimension((int) (image.getWidth() * canvas.zoom), (int) (image.getHeight() * canvas.zoom));
+            canvas.setPreferredSize(d);
+            canvas.setSize(d);
+            canvas.revalidate();
         }
         this.image = image;
+        buildPyramid();
         canvas.validate();
         canvas.repaint();
     }
 
+    // drops the levels of the previous image and halves the new one in the background, the canvas draws
+    // from the levels done so far
+    private void buildPyramid() {
+        if (pyramid != null) {
+            pyramid.cancel();
+            pyramid = null;
+        }
+
+        levels.clear();
+        levels.add(image);
+        if (Math.max(image.getWidth(), image.getHeight()) <= TILE) {
+            return;
+        }
+
+        FilterExecutor.Job job = pyramid = new FilterExecutor.Job();
+        BufferedImage source = image;
+
+        new SwingWorker<Void, BufferedImage>() {
+            @Override
+            protected Void doInBackground() {
+                return FilterExecutor.run(job, () -> {
+                    BufferedImage level = source;
+                    while (Math.max(level.getWidth(), level.getHeight()) > TILE) {
+                        GeometricFilter filter = new GeometricFilter(level);
+                        filter.setResampling(GeometricFilter.BOX);
+                        level = filter.scale(0.5);
+                        publish(level);
+                    }
+                    return null;
+                });
+            }
+
+            @Override
+            protected void process(List<BufferedImage> chunks) {
+                // of an image since replaced
+                if (job != pyramid) {
+                    return;
+                }
+                levels.addAll(chunks);
+                canvas.repaint();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof CancellationException)) {
+                        e.getCause().printStackTrace();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
     public class Canvas extends JComponent implements MouseWheelListener, MouseMotionListener, MouseListener {
         private double zoom = 1.0;
         public static final double SCALE_STEP = 0.1d;
@@ -40,15 +171,37 @@ public class JScrollPaneImage extends JScrollPane {
         private double scrollX = 0d;
         private double scrollY = 0d;
 
+        // zoom the wheel events since the last frame lead to, and the last of them, null if there is none
+        private double targetZoom = zoom;
+        private MouseWheelEvent pendingWheel;
+        private final Timer wheelTimer;
+
+        // nearest neighbor while zooming or dragging, until the idle timer fires
+        private boolean interacting = false;
+        private final Timer idleTimer;
+
+        private long lastPaintTime;
+        private long totalPaintTime;
+        private long paintCount;
+
         public Canvas() {
             addMouseWheelListener(this);
             addMouseMotionListener(this);
             addMouseListener(this);
             setAutoscrolls(true);
+
+            wheelTimer = new Timer(FRAME, e -> applyZoom());
+            wheelTimer.setRepeats(false);
+            idleTimer = new Timer(IDLE, e -> {
+                interacting = false;
+                repaint();
+            });
+            idleTimer.setRepeats(false);
         }
 
         @Override
         public void paintComponent(Graphics g) {
+            long start = System.nanoTime();
             super.paintComponent(g);
             Graphics2D g2d = (Graphics2D) g.create();
             g2d.setColor(getBackground());
@@ -60,31 +213,89 @@ public class JScrollPaneImage extends JScrollPane {
                 dy = getHeight() / 2 - getPreferredSize().height / 2;
             }
 
-            g.setColor(new Color(230, 230, 230));
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setPaint(new TexturePaint(CHECKER, new Rectangle(dx, dy, CHECKER.getWidth(), CHECKER.getHeight())));
+            g2.fillRect(dx, dy, getPreferredSize().width, getPreferredSize().height);
 
-            g.fillRect(dx, dy, getPreferredSize().width, getPreferredSize().height);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interacting
+                    ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                    : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            drawTiles(g2, dx, dy);
+            g2.dispose();
+            g2d.dispose();
 
-            float qs = 32f;
+            lastPaintTime = System.nanoTime() - start;
+            totalPaintTime += lastPaintTime;
+            paintCount++;
+        }
 
-            g.setColor(new Color(106, 106, 106));
+        // switches to the fast interpolation until the canvas has been still for a while
+        private void interact() {
+            interacting = true;
+            idleTimer.restart();
+        }
 
-            for (float x = 0; x < getPreferredSize().width; x += qs * 2) {
-                for (float y = 0; y < getPreferredSize().height; y += qs * 2) {
-                    g.fillRect((int) x + dx, (int) y + dy, (int) qs, (int) qs);
-                    g.fillRect((int) (x + qs) + dx, (int) (y + qs) + dy, (int) qs, (int) qs);
-                }
+        // draws the tiles of the smallest level still as large as the image on screen, only those in the clip
+        private void drawTiles(Graphics g, int dx, int dy) {
+            int width = getPreferredSize().width;
+            int height = getPreferredSize().height;
+
+            int level = 0;
+            while (level + 1 < levels.size() && levels.get(level + 1).getWidth() >= width
+                    && levels.get(level + 1).getHeight() >= height) {
+                level++;
             }
-            g.setColor(getBackground());
-            g.fillRect(dx + getPreferredSize().width, dy, (int) qs * 2, (int) (getPreferredSize().height + qs * 2));
-            g.fillRect(dx, dy + getPreferredSize().height, (int) (getPreferredSize().width + qs * 2), (int) qs * 2);
 
-            g.drawImage(image, dx, dy, getPreferredSize().width, getPreferredSize().height, null);
-            g2d.dispose();
+            BufferedImage source = levels.get(level);
+            int lw = source.getWidth();
+            int lh = source.getHeight();
+
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(dx, dy, width, height);
+            }
+
+            for (int ty = 0; ty < lh; ty += TILE) {
+                int sy = Math.min(ty + TILE, lh);
+                int y0 = dy + (int) ((long) ty * height / lh);
+                int y1 = dy + (int) ((long) sy * height / lh);
+                if (y1 <= clip.y || y0 >= clip.y + clip.height) {
+                    continue;
+                }
+
+                for (int tx = 0; tx < lw; tx += TILE) {
+                    int sx = Math.min(tx + TILE, lw);
+                    int x0 = dx + (int) ((long) tx * width / lw);
+                    int x1 = dx + (int) ((long) sx * width / lw);
+                    if (x1 <= clip.x || x0 >= clip.x + clip.width) {
+                        continue;
+                    }
+
+                    g.drawImage(source, x0, y0, x1, y1, tx, ty, sx, sy, null);
+                }
+            }
         }
 
         public void mouseWheelMoved(MouseWheelEvent e) {
-            double zoomFactor = -SCALE_STEP * e.getPreciseWheelRotation() * zoom;
-            zoom = Math.abs(zoom + zoomFactor);
+            double base = pendingWheel == null ? zoom : targetZoom;
+            double zoomFactor = -SCALE_STEP * e.getPreciseWheelRotation() * base;
+            targetZoom = Math.abs(base + zoomFactor);
+            pendingWheel = e;
+
+            interact();
+            if (!wheelTimer.isRunning()) {
+                wheelTimer.start();
+            }
+        }
+
+        // resizes and repaints once for the wheel events of the last frame, about the last mouse position
+        private void applyZoom() {
+            MouseWheelEvent e = pendingWheel;
+            if (e == null) {
+                return;
+            }
+            pendingWheel = null;
+            zoom = targetZoom;
             //Here we calculate new size of canvas relative to zoom.
             Rectangle realView = getVisibleRect();
             Dimension d = new Dimension(
@@ -141,6 +352,7 @@ public class JScrollPaneImage extends JScrollPane {
 
         public void mouseDragged(MouseEvent e) {
             if (origin != null) {
+                interact();
                 int deltaX = origin.x - e.getX();
                 int deltaY = origin.y - e.getY();
                 Rectangle view = getVisibleRect();
@@ -7,9 +7,13 @@ import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
 import java.util.StringTokenizer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.DefaultComboBoxModel;
+import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
@@ -20,20 +24,55 @@ import javax.swing.JPanel;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
 import javax.swing.border.LineBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import filters.ConvolutionFilter;
+import filters.FilterExecutor;
+import filters.GeometricFilter;
 
 @SuppressWarnings("serial")
 public class JConvolutionDialog extends JDialog {
 
+	// the preview runs this long after the last change of the matrix, so typing does not start one per key
+	private static final int DELAY = 250;
+
+	private static final int PREVIEW_WIDTH = 220;
+	private static final int PREVIEW_HEIGHT = 100;
+
 	private Matrix matrix = null;
 
 	private JTextField txtDivisor;
 	private JTextArea txtrMatrix;
 	private JCheckBox chckbxNormalize;
 
+	// image to preview the kernel on, null for no preview, and the part of it shown in the editor
+	private final BufferedImage image;
+	private final Rectangle view;
+
+	// the whole image downscaled to the preview size, made by the first preview
+	private volatile BufferedImage proxy;
+
+	private JLabel lblProxy;
+	private JLabel lblView;
+	private Timer timer;
+
+	// the preview running, cancelled when the matrix changes again
+	private FilterExecutor.Job job;
+
 	public JConvolutionDialog(final Window owner, String title) {
+		this(owner, title, null, null);
+	}
+
+	public JConvolutionDialog(final Window owner, String title, BufferedImage image, Rectangle view) {
 		super(owner, title);
+		this.image = image;
+		this.view = view;
+
 		setModal(true);
 		setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
 
@@ -139,6 +178,10 @@ public class JConvolutionDialog extends JDialog {
 		chckbxNormalize.setBounds(119, 242, 97, 23);
 		getContentPane().add(chckbxNormalize);
 
+		if (image != null) {
+			createPreview();
+		}
+
 		// dialog properties
 		setLocationRelativeTo(owner);
 		setVisible(true);
@@ -148,6 +191,152 @@ public class JConvolutionDialog extends JDialog {
 		return matrix;
 	}
 
+	@Override
+	public void dispose() {
+		if (timer != null) {
+			timer.stop();
+		}
+		if (job != null) {
+			job.cancel();
+		}
+		super.dispose();
+	}
+
+	// the whole image reduced and a window of it at full resolution, side by side with the matrix
+	private void createPreview() {
+		setBounds(100, 100, 450 + PREVIEW_WIDTH + 10, 300);
+
+		JLabel lblReduced = new JLabel("Imagem reduzida:");
+		lblReduced.setBounds(444, 11, PREVIEW_WIDTH, 14);
+		getContentPane().add(lblReduced);
+
+		lblProxy = new JLabel();
+		lblProxy.setHorizontalAlignment(SwingConstants.CENTER);
+		lblProxy.setBorder(new LineBorder(new Color(0, 0, 0)));
+		lblProxy.setBounds(444, 36, PREVIEW_WIDTH, PREVIEW_HEIGHT);
+		getContentPane().add(lblProxy);
+
+		JLabel lblVisible = new JLabel("Área visível:");
+		lblVisible.setBounds(444, 140, PREVIEW_WIDTH, 14);
+		getContentPane().add(lblVisible);
+
+		lblView = new JLabel();
+		lblView.setHorizontalAlignment(SwingConstants.CENTER);
+		lblView.setBorder(new LineBorder(new Color(0, 0, 0)));
+		lblView.setBounds(444, 165, PREVIEW_WIDTH, PREVIEW_HEIGHT);
+		getContentPane().add(lblView);
+
+		timer = new Timer(DELAY, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				preview();
+			}
+		});
+		timer.setRepeats(false);
+
+		DocumentListener listener = new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				timer.restart();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				timer.restart();
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				timer.restart();
+			}
+		};
+		txtrMatrix.getDocument().addDocumentListener(listener);
+		txtDivisor.getDocument().addDocumentListener(listener);
+		chckbxNormalize.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				timer.restart();
+			}
+		});
+	}
+
+	// runs the kernel on the previews in the background; an invalid matrix keeps the last previews
+	private void preview() {
+		final Matrix matrix = new Matrix();
+		if (!matrix.parseText(txtrMatrix.getText(), chckbxNormalize.isSelected())) {
+			return;
+		}
+
+		if (job != null) {
+			job.cancel();
+		}
+		final FilterExecutor.Job current = job = new FilterExecutor.Job();
+
+		final int[][] kernel = matrix.getData();
+		final int divisor = matrix.getDivisor();
+
+		new SwingWorker<BufferedImage[], Void>() {
+			@Override
+			protected BufferedImage[] doInBackground() {
+				return FilterExecutor.run(current, () -> new BufferedImage[] {
+						new ConvolutionFilter(getProxy()).convolution(kernel, divisor), window(kernel, divisor) });
+			}
+
+			@Override
+			protected void done() {
+				// a newer preview is on its way
+				if (current != job) {
+					return;
+				}
+				job = null;
+
+				try {
+					BufferedImage[] previews = get();
+					lblProxy.setIcon(new ImageIcon(previews[0]));
+					lblView.setIcon(new ImageIcon(previews[1]));
+				} catch (ExecutionException e) {
+					if (!(e.getCause() instanceof CancellationException)) {
+						e.getCause().printStackTrace();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}.execute();
+	}
+
+	private BufferedImage getProxy() {
+		if (proxy == null) {
+			double scale = Math.min(1, Math.min((double) PREVIEW_WIDTH / image.getWidth(),
+					(double) PREVIEW_HEIGHT / image.getHeight()));
+
+			GeometricFilter filter = new GeometricFilter(image);
+			filter.setResampling(GeometricFilter.BOX);
+			proxy = filter.scale(scale);
+		}
+		return proxy;
+	}
+
+	// the kernel at full resolution on a preview-sized window at the center of the view, computed from the
+	// window plus a border of half the kernel so its edges come out as in the whole image
+	private BufferedImage window(int[][] kernel, int divisor) {
+		int w = Math.min(PREVIEW_WIDTH, image.getWidth());
+		int h = Math.min(PREVIEW_HEIGHT, image.getHeight());
+
+		Rectangle center = view != null ? view : new Rectangle(image.getWidth(), image.getHeight());
+		int x = Math.max(0, Math.min(image.getWidth() - w, (int) center.getCenterX() - w / 2));
+		int y = Math.max(0, Math.min(image.getHeight() - h, (int) center.getCenterY() - h / 2));
+
+		int mx = kernel[0].length / 2;
+		int my = kernel.length / 2;
+		Rectangle area = new Rectangle(x - mx, y - my, w + 2 * mx, h + 2 * my)
+				.intersection(new Rectangle(image.getWidth(), image.getHeight()));
+
+		BufferedImage result = new ConvolutionFilter(image.getSubimage(area.x, area.y, area.width, area.height))
+				.convolution(kernel, divisor);
+		return result.getSubimage(x - area.x, y - area.y, w, h);
+	}
+
 	public class Matrix {
 		private int rows, cols;
 		private int[][] data;
@@ -5,6 +5,8 @@ import java.awt.image.BufferedImage;
 import javax.swing.AbstractAction;
 import javax.swing.JOptionPane;
 
+import filters.BaseFilter;
+import filters.PointPipeline;
 import gui.ImageEditor;
 
 @SuppressWarnings("serial")
@@ -24,6 +26,16 @@ public abstract class MenuBaseAction extends AbstractAction {
 		this.action = action;
 	}
 
+	// adds a point operation to the chain being recorded, if any
+	protected void record(PointPipeline step) {
+		jfImageEditor.record(step);
+	}
+
+	// whether the filters read and write this type of image without loss, so an inverse gives back the same pixels
+	protected boolean isExact(BufferedImage image) {
+		return BaseFilter.isExact(image);
+	}
+
 	protected boolean isValidTab() {
 		return jfImageEditor.getImage() != null ? true : false;
 	}
@@ -98,6 +110,12 @@ public abstract class MenuBaseAction extends AbstractAction {
 		return number;
 	}
 
+	// index of the chosen option, -1 on cancel
+	protected int promptOption(String message, String[] options) {
+		return JOptionPane.showOptionDialog(null, message, null, JOptionPane.DEFAULT_OPTION,
+				JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+	}
+
 	protected int[] promptNumberXY() {
 		String inputX = JOptionPane.showInputDialog("Digite o valor de X:", 0);
 		String inputY = JOptionPane.showInputDialog("Digite o valor de Y:", 0);
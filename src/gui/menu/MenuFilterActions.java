@@ -2,6 +2,7 @@ package gui.menu;
 
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
+import java.util.function.UnaryOperator;
 
 import javax.swing.AbstractAction;
 
@@ -12,8 +13,10 @@ import filters.ChannelFilter;
 import filters.ConvolutionFilter;
 import filters.GrayscaleFilter;
 import filters.MedianFilter;
+import filters.PointPipeline;
 import filters.SearchFilter;
 import gui.ImageEditor;
+import gui.Operation;
 import gui.dialogs.JConvolutionDialog;
 import gui.dialogs.JConvolutionDialog.Matrix;
 
@@ -24,6 +27,7 @@ public class MenuFilterActions extends MenuBaseAction {
 	public static final int SEARCH = 1;
 	public static final int THRESHOULD = 2;
 	public static final int MEDIAN = 3;
+	public static final int CHAIN = 4;
 
 	public MenuFilterActions(ImageEditor jFrame) {
 		super(jFrame, NONE);
@@ -51,22 +55,24 @@ public class MenuFilterActions extends MenuBaseAction {
 				return;
 			}
 
-			BufferedImage temp = jfImageEditor.getImage();
-			ChannelFilter filter = new ChannelFilter(temp);
+			Operation operation = null;
 
 			switch (action) {
 			case RED:
-				temp = filter.red();
+				operation = new Operation("red", image -> new ChannelFilter(image).red());
+				record(new PointPipeline().red());
 				break;
 			case GREEN:
-				temp = filter.green();
+				operation = new Operation("green", image -> new ChannelFilter(image).green());
+				record(new PointPipeline().green());
 				break;
 			case BLUE:
-				temp = filter.blue();
+				operation = new Operation("blue", image -> new ChannelFilter(image).blue());
+				record(new PointPipeline().blue());
 				break;
 			}
 
-			jfImageEditor.setImage(temp);
+			jfImageEditor.apply(operation);
 		}
 
 	}
@@ -94,9 +100,6 @@ public class MenuFilterActions extends MenuBaseAction {
 				return;
 			}
 
-			BufferedImage temp = jfImageEditor.getImage();
-			ArithmeticFilter filter = new ArithmeticFilter(temp);
-
 			// constants
 			int ki = 0;
 			double kd = 0;
@@ -112,22 +115,7 @@ public class MenuFilterActions extends MenuBaseAction {
 			case MULTIPLICATION_CONST:
 			case DIVISION_CONST: {
 				kd = promptDouble();
-				if (ki == -1) {
-					return;
-				}
-				break;
-			}
-			}
-
-			// images
-			BufferedImage temp2 = null;
-			switch (action) {
-			case ADDITION_IMAGE:
-			case SUBTRACTION_IMAGE:
-			case MULTIPLICATION_IMAGE:
-			case DIVISION_IMAGE: {
-				temp2 = promptImage();
-				if (temp2 == null) {
+				if (kd == -1) {
 					return;
 				}
 				break;
@@ -135,42 +123,49 @@ public class MenuFilterActions extends MenuBaseAction {
 			}
 
 			// apply filter
+			int i = ki;
+			double d = kd;
+			Operation operation = null;
 			switch (action) {
 			case ADDITION_CONST: {
-				temp = filter.add(ki);
+				operation = new Operation("add " + i, image -> new ArithmeticFilter(image).add(i));
+				record(new PointPipeline().add(ki));
 				break;
 			}
 			case SUBTRACTION_CONST: {
-				temp = filter.sub(ki);
+				operation = new Operation("sub " + i, image -> new ArithmeticFilter(image).sub(i));
+				record(new PointPipeline().sub(ki));
 				break;
 			}
 			case MULTIPLICATION_CONST: {
-				temp = filter.mul(kd);
+				operation = new Operation("mul " + d, image -> new ArithmeticFilter(image).mul(d));
+				record(new PointPipeline().mul(kd));
 				break;
 			}
 			case DIVISION_CONST: {
-				temp = filter.div(kd);
+				operation = new Operation("div " + d, image -> new ArithmeticFilter(image).div(d));
+				record(new PointPipeline().div(kd));
 				break;
 			}
 			case ADDITION_IMAGE: {
-				temp = filter.add(temp2);
+				operation = new Operation("add image", image -> new ArithmeticFilter(image).add(image));
 				break;
 			}
 			case SUBTRACTION_IMAGE: {
-				temp = filter.sub(temp2);
+				operation = new Operation("sub image", image -> new ArithmeticFilter(image).sub(image));
 				break;
 			}
 			case MULTIPLICATION_IMAGE: {
-				temp = filter.mul(temp2);
+				operation = new Operation("mul image", image -> new ArithmeticFilter(image).mul(image));
 				break;
 			}
 			case DIVISION_IMAGE: {
-				temp = filter.div(temp2);
+				operation = new Operation("div image", image -> new ArithmeticFilter(image).div(image));
 				break;
 			}
 			}
 
-			jfImageEditor.setImage(temp);
+			jfImageEditor.apply(operation);
 		}
 
 	}
@@ -198,55 +193,61 @@ public class MenuFilterActions extends MenuBaseAction {
 			}
 
 			BufferedImage temp = jfImageEditor.getImage();
-			BitwiseFilter filter = new BitwiseFilter(temp);
+			Operation operation = null;
 
 			switch (action) {
 			case AND_CONST: {
 				int k = promptInteger();
-				temp = filter.and(k);
+				if (k == -1) {
+					return;
+				}
+				operation = new Operation("and " + k, image -> new BitwiseFilter(image).and(k));
+				record(new PointPipeline().and(k));
 				break;
 			}
 			case OR_CONST: {
 				int k = promptInteger();
-				temp = filter.or(k);
+				if (k == -1) {
+					return;
+				}
+				operation = new Operation("or " + k, image -> new BitwiseFilter(image).or(k));
+				record(new PointPipeline().or(k));
 				break;
 			}
 			case NOT: {
-				temp = filter.not();
+				// ~~px == px, alpha included
+				UnaryOperator<BufferedImage> not = image -> new BitwiseFilter(image).not();
+				operation = new Operation("not", not, isExact(temp) ? not : null);
+				record(new PointPipeline().not());
 				break;
 			}
 			case XOR_CONST: {
 				int k = promptInteger();
-				temp = filter.xor(k);
+				if (k == -1) {
+					return;
+				}
+				// the result is opaque, so xor is its own inverse only on images without alpha
+				UnaryOperator<BufferedImage> xor = image -> new BitwiseFilter(image).xor(k);
+				boolean opaque = !temp.getColorModel().hasAlpha();
+				operation = new Operation("xor " + k, xor, isExact(temp) && opaque ? xor : null);
+				record(new PointPipeline().xor(k));
 				break;
 			}
 			case AND_IMAGE: {
-				BufferedImage temp2 = promptImage();
-				if (temp2 == null) {
-					return;
-				}
-				temp = filter.and(temp2);
+				operation = new Operation("and image", image -> new BitwiseFilter(image).and(image));
 				break;
 			}
 			case OR_IMAGE: {
-				BufferedImage temp2 = promptImage();
-				if (temp2 == null) {
-					return;
-				}
-				temp = filter.or(temp2);
+				operation = new Operation("or image", image -> new BitwiseFilter(image).or(image));
 				break;
 			}
 			case XOR_IMAGE: {
-				BufferedImage temp2 = promptImage();
-				if (temp2 == null) {
-					return;
-				}
-				temp = filter.xor(temp2);
+				operation = new Operation("xor image", image -> new BitwiseFilter(image).xor(image));
 				break;
 			}
 			}
 
-			jfImageEditor.setImage(temp);
+			jfImageEditor.apply(operation);
 		}
 
 	}
@@ -269,25 +270,27 @@ public class MenuFilterActions extends MenuBaseAction {
 				return;
 			}
 
-			BufferedImage temp = jfImageEditor.getImage();
-			GrayscaleFilter filter = new GrayscaleFilter(temp);
+			Operation operation = null;
 
 			switch (action) {
 			case AVERAGE: {
-				temp = filter.average();
+				operation = new Operation("average", image -> new GrayscaleFilter(image).average());
+				record(new PointPipeline().average());
 				break;
 			}
 			case SDTV: {
-				temp = filter.sdtv();
+				operation = new Operation("sdtv", image -> new GrayscaleFilter(image).sdtv());
+				record(new PointPipeline().sdtv());
 				break;
 			}
 			case HDTV: {
-				temp = filter.hdtv();
+				operation = new Operation("hdtv", image -> new GrayscaleFilter(image).hdtv());
+				record(new PointPipeline().hdtv());
 				break;
 			}
 			}
 
-			jfImageEditor.setImage(temp);
+			jfImageEditor.apply(operation);
 		}
 
 	}
@@ -310,12 +313,12 @@ public class MenuFilterActions extends MenuBaseAction {
 				return;
 			}
 
-			BufferedImage temp = jfImageEditor.getImage();
-			ConvolutionFilter filter = new ConvolutionFilter(temp);
+			Operation operation = null;
 
 			switch (action) {
 			case GENERIC: {
-				JConvolutionDialog jConvolutionMatrix = new JConvolutionDialog(jfImageEditor, "Matriz Convolu��o");
+				JConvolutionDialog jConvolutionMatrix = new JConvolutionDialog(jfImageEditor, "Matriz Convolu��o",
+						jfImageEditor.getImage(), jfImageEditor.getVisibleImageRect());
 
 				Matrix matrix = jConvolutionMatrix.getMatrix();
 				if (matrix == null) {
@@ -325,20 +328,21 @@ public class MenuFilterActions extends MenuBaseAction {
 				int[][] kernel = matrix.getData();
 				int divisor = matrix.getDivisor();
 
-				temp = filter.convolution(kernel, divisor);
+				operation = new Operation("convolution",
+						image -> new ConvolutionFilter(image).convolution(kernel, divisor));
 				break;
 			}
 			case ROBERTS: {
-				temp = filter.roberts();
+				operation = new Operation("roberts", image -> new ConvolutionFilter(image).roberts());
 				break;
 			}
 			case SOBEL: {
-				temp = filter.sobel();
+				operation = new Operation("sobel", image -> new ConvolutionFilter(image).sobel());
 				break;
 			}
 			}
 
-			jfImageEditor.setImage(temp);
+			jfImageEditor.apply(operation);
 		}
 	}
 
@@ -348,28 +352,29 @@ public class MenuFilterActions extends MenuBaseAction {
 			return;
 		}
 
-		BufferedImage temp = jfImageEditor.getImage();
+		Operation operation = null;
 
 		switch (action) {
 		case BLEND: {
-			BufferedImage temp2 = promptImage();
-			if (temp2 == null) {
+			double k = promptDouble(100);
+			if (k == -1) {
 				return;
 			}
-			double k = promptDouble(100);
 
-			BlendingFilter filter = new BlendingFilter(temp);
-			temp = filter.blend(temp2, k);
+			operation = new Operation("blend " + k, image -> new BlendingFilter(image).blend(image, k));
 			break;
 		}
 		case SEARCH: {
-			BufferedImage temp2 = promptImage();
-			if (temp2 == null) {
+			int method = promptOption("Método de busca:", new String[] { "Histograma", "Correlação" });
+			if (method == -1) {
 				return;
 			}
 
-			SearchFilter filter = new SearchFilter(temp);
-			temp = filter.findPattern(temp2);
+			operation = new Operation("search", image -> {
+				SearchFilter filter = new SearchFilter(image);
+				filter.setMethod(method == 0 ? SearchFilter.HISTOGRAM : SearchFilter.CORRELATION);
+				return filter.findPattern(image);
+			});
 			break;
 		}
 		case THRESHOULD: {
@@ -378,8 +383,8 @@ public class MenuFilterActions extends MenuBaseAction {
 				return;
 			}
 
-			GrayscaleFilter filter = new GrayscaleFilter(temp);
-			temp = filter.threshold(k);
+			operation = new Operation("threshold " + k, image -> new GrayscaleFilter(image).threshold(k));
+			record(new PointPipeline().threshold(k));
 			break;
 		}
 		case MEDIAN: {
@@ -388,14 +393,24 @@ public class MenuFilterActions extends MenuBaseAction {
 				return;
 			}
 
-			MedianFilter filter = new MedianFilter(temp);
-			temp = filter.median(k);
+			operation = new Operation("median " + k, image -> new MedianFilter(image).median(k));
+			break;
+		}
+		case CHAIN: {
+			PointPipeline chain = jfImageEditor.getChain();
+			if (chain.isEmpty()) {
+				return;
+			}
+
+			// all the recorded steps in a single pass, on a copy since the recording goes on
+			PointPipeline steps = new PointPipeline().then(chain);
+			operation = new Operation(steps.toString(), image -> steps.apply(image));
 			break;
 		}
 
 		}
 
-		jfImageEditor.setImage(temp);
+		jfImageEditor.apply(operation);
 	}
 
 }
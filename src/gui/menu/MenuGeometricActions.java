@@ -2,11 +2,14 @@ package gui.menu;
 
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
+import java.util.function.UnaryOperator;
 
 import javax.swing.AbstractAction;
 
 import filters.GeometricFilter;
+import filters.GeometricPipeline;
 import gui.ImageEditor;
+import gui.Operation;
 
 @SuppressWarnings("serial")
 public class MenuGeometricActions extends MenuBaseAction {
@@ -40,53 +43,141 @@ public class MenuGeometricActions extends MenuBaseAction {
 				return;
 			}
 
-			BufferedImage temp = jfImageEditor.getImage();
-			GeometricFilter filter = new GeometricFilter(temp);
+			GeometricPipeline transform = jfImageEditor.getTransform();
+			Operation operation = null;
 
 			switch (action) {
 			case HORIZONTAL: {
-				temp = filter.flipHorizontal();
+				transform.flipHorizontal();
+				UnaryOperator<BufferedImage> flip = image -> new GeometricFilter(image).flipHorizontal();
+				operation = new Operation("flipHorizontal", flip, flip);
 				break;
 			}
 			case VERTICAL: {
-				temp = filter.flipVertical();
+				transform.flipVertical();
+				UnaryOperator<BufferedImage> flip = image -> new GeometricFilter(image).flipVertical();
+				operation = new Operation("flipVertical", flip, flip);
 				break;
 			}
 			}
 
-			jfImageEditor.setImage(temp);
+			apply(transform, operation);
 		}
 
 	}
 
+	public class Rotate extends AbstractAction {
+
+		public static final int CLOCKWISE = 0;
+		public static final int HALF_TURN = 1;
+		public static final int COUNTERCLOCKWISE = 2;
+
+		private final int action;
+
+		public Rotate(int action) {
+			this.action = action;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (!isValidTab()) {
+				return;
+			}
+
+			GeometricPipeline transform = jfImageEditor.getTransform();
+			Operation operation = null;
+
+			UnaryOperator<BufferedImage> clockwise = image -> new GeometricFilter(image).rotate90();
+			UnaryOperator<BufferedImage> half = image -> new GeometricFilter(image).rotate180();
+			UnaryOperator<BufferedImage> counterclockwise = image -> new GeometricFilter(image).rotate270();
+
+			switch (action) {
+			case CLOCKWISE: {
+				transform.rotate90();
+				operation = new Operation("rotate90", clockwise, counterclockwise);
+				break;
+			}
+			case HALF_TURN: {
+				transform.rotate180();
+				operation = new Operation("rotate180", half, half);
+				break;
+			}
+			case COUNTERCLOCKWISE: {
+				transform.rotate270();
+				operation = new Operation("rotate270", counterclockwise, clockwise);
+				break;
+			}
+			}
+
+			apply(transform, operation);
+		}
+
+	}
+
+	// pixel moves: on their own an operation with an exact inverse, after other geometric steps one more of them
+	private void apply(GeometricPipeline transform, Operation operation) {
+		if (transform.size() == 1) {
+			jfImageEditor.apply(operation);
+		} else {
+			jfImageEditor.setImage(transform);
+		}
+	}
+
 	@Override
 	public void actionPerformed(ActionEvent e) {
 		if (!isValidTab()) {
 			return;
 		}
 
-		BufferedImage temp = jfImageEditor.getImage();
-		GeometricFilter filter = new GeometricFilter(temp);
+		// added to the steps behind the current image, so the result is still resampled once
+		GeometricPipeline transform = jfImageEditor.getTransform();
 
 		switch (action) {
 		case TRANSLATION: {
 			int pos[] = promptNumberXY();
-			temp = filter.translate(pos[0], pos[1]);
+			transform.translate(pos[0], pos[1]);
 			break;
 		}
 		case ROTATION: {
 			double angle = promptNumberDegree();
-			temp = filter.rotate(angle);
+			transform.rotate(angle);
 			break;
 		}
 		case SCALE: {
 			double value = promptDouble();
-			temp = filter.scale(value);
+			if (value <= 0) {
+				return;
+			}
+
+			int resampling = promptOption("Interpolação:",
+					new String[] { "Vizinho mais próximo", "Média (box)", "Bilinear", "Bicúbica", "Lanczos" });
+			if (resampling == -1) {
+				return;
+			}
+
+			int[] resamplings = { GeometricFilter.NEAREST, GeometricFilter.BOX, GeometricFilter.BILINEAR,
+					GeometricFilter.BICUBIC, GeometricFilter.LANCZOS };
+
+			// the box and Lanczos filters average areas, which a point sampled chain cannot, so they
+			// resample the current image on their own
+			if (resamplings[resampling] == GeometricFilter.BOX || resamplings[resampling] == GeometricFilter.LANCZOS) {
+				int filter = resamplings[resampling];
+				jfImageEditor.apply(new Operation("scale " + value, image -> {
+					GeometricFilter scale = new GeometricFilter(image);
+					scale.setResampling(filter);
+					return scale.scale(value);
+				}));
+				return;
+			}
+
+			// the single resampling of the chain uses the best interpolation any of its steps asked for
+			transform.setInterpolation(Math.max(transform.getInterpolation(), resamplings[resampling]));
+			transform.scale(value);
 			break;
 		}
 		}
 
-		jfImageEditor.setImage(temp);
+		jfImageEditor.setImage(transform);
 	}
 
 }
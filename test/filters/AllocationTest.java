@@ -0,0 +1,341 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+// Bytes allocated by every public filter method on a fixed image, once warmed up, summed over all the
+// threads so that the filter worker threads count too. An operation may allocate its whole-image
+// buffers, the copy of the source pixels, the destination pixels and the raster of the result (16
+// bytes a pixel with a second image), and a fixed part, but no buffer that grows with the kernel size
+// or the median radius.
+//
+// usage: java -cp bin filters.AllocationTest
+public class AllocationTest {
+
+	private static final Class<?>[] FILTERS = { ArithmeticFilter.class, BitwiseFilter.class, BlendingFilter.class,
+			ChannelFilter.class, ConvolutionFilter.class, GeometricFilter.class, GrayscaleFilter.class,
+			MedianFilter.class, SearchFilter.class };
+
+	private static final int SIZE = 512;
+
+	private static final int WARMUP = 3;
+	private static final int RUNS = 3;
+
+	// bytes per pixel of the larger of the image and the result
+	private static final int BUDGET = 16;
+
+	// the searches also keep a gray level per pixel and, on several levels, its pyramid; the correlation
+	// keeps a score per position, the planes of a band of tiles and the spectrum of the pattern for a
+	// tile of up to 512 x 512
+	private static final int SEARCH = 24;
+	private static final int CORRELATION = 72;
+
+	// kernels, lookup tables, band lists: whatever the size of the image
+	private static final long FIXED = 256 << 10;
+
+	// largest difference between the bytes per pixel of the cases of a series
+	private static final int GROWTH = 2;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	private static class Case {
+		final String method, name, series;
+		final int budget;
+		final Function<BufferedImage, Object> operation;
+
+		Case(String method, String params, String series, int budget, Function<BufferedImage, Object> operation) {
+			this.method = method;
+			this.name = params.isEmpty() ? method : method + " [" + params + "]";
+			this.series = series;
+			this.budget = budget;
+			this.operation = operation;
+		}
+	}
+
+	private static final List<Case> CASES = new ArrayList<>();
+
+	private static int failures = 0;
+
+	public static void main(String[] args) {
+		register();
+
+		for (String method : uncovered()) {
+			failures++;
+			System.out.println("FAILED " + method + " has no case");
+		}
+
+		final BufferedImage image = image(SIZE, SIZE, 1);
+
+		// smallest and largest bytes per pixel of each series
+		final Map<String, double[]> series = new LinkedHashMap<>();
+
+		for (Case c : CASES) {
+			final Object result = c.operation.apply(image);
+			for (int i = 1; i < WARMUP; i++) {
+				c.operation.apply(image);
+			}
+
+			// the least of the runs, a worker thread that gets its first band of the filter late allocates
+			// its buffers in one of them
+			long bytes = Long.MAX_VALUE;
+			for (int i = 0; i < RUNS; i++) {
+				final long before = allocatedBytes();
+				c.operation.apply(image);
+				bytes = Math.min(bytes, allocatedBytes() - before);
+			}
+
+			long pixels = (long) image.getWidth() * image.getHeight();
+			if (result instanceof BufferedImage) {
+				final BufferedImage output = (BufferedImage) result;
+				pixels = Math.max(pixels, (long) output.getWidth() * output.getHeight());
+			}
+
+			final double perPixel = (double) bytes / pixels;
+			final boolean ok = bytes <= c.budget * pixels + FIXED;
+			if (!ok) {
+				failures++;
+			}
+			System.out.println(String.format("%s%s %.1f B/px (budget %d)", ok ? "ok     " : "FAILED ", c.name, perPixel,
+					c.budget));
+
+			if (c.series != null) {
+				final double[] range = series.computeIfAbsent(c.series,
+						s -> new double[] { Double.MAX_VALUE, -Double.MAX_VALUE });
+				range[0] = Math.min(range[0], perPixel);
+				range[1] = Math.max(range[1], perPixel);
+			}
+		}
+
+		for (Map.Entry<String, double[]> e : series.entrySet()) {
+			final double growth = e.getValue()[1] - e.getValue()[0];
+			final boolean ok = growth <= GROWTH;
+			if (!ok) {
+				failures++;
+			}
+			System.out.println(String.format("%s%s grows %.1f B/px", ok ? "ok     " : "FAILED ", e.getKey(), growth));
+		}
+
+		if (failures > 0) {
+			System.out.println(failures + " failed");
+			System.exit(1);
+		}
+		System.out.println("ok");
+	}
+
+	private static void register() {
+		add("ArithmeticFilter.add(int)", "k=37", image -> new ArithmeticFilter(image).add(37));
+		add("ArithmeticFilter.sub(int)", "k=37", image -> new ArithmeticFilter(image).sub(37));
+		add("ArithmeticFilter.mul(double)", "k=1.3", image -> new ArithmeticFilter(image).mul(1.3));
+		add("ArithmeticFilter.div(double)", "k=2.7", image -> new ArithmeticFilter(image).div(2.7));
+		add("ArithmeticFilter.add(BufferedImage)", "", image -> new ArithmeticFilter(image).add(image));
+		add("ArithmeticFilter.sub(BufferedImage)", "", image -> new ArithmeticFilter(image).sub(image));
+		add("ArithmeticFilter.mul(BufferedImage)", "", image -> new ArithmeticFilter(image).mul(image));
+		add("ArithmeticFilter.div(BufferedImage)", "", image -> new ArithmeticFilter(image).div(image));
+
+		add("BitwiseFilter.and(int)", "k=90", image -> new BitwiseFilter(image).and(90));
+		add("BitwiseFilter.or(int)", "k=90", image -> new BitwiseFilter(image).or(90));
+		add("BitwiseFilter.xor(int)", "k=90", image -> new BitwiseFilter(image).xor(90));
+		add("BitwiseFilter.not()", "", image -> new BitwiseFilter(image).not());
+		add("BitwiseFilter.and(BufferedImage)", "", image -> new BitwiseFilter(image).and(image));
+		add("BitwiseFilter.or(BufferedImage)", "", image -> new BitwiseFilter(image).or(image));
+		add("BitwiseFilter.xor(BufferedImage)", "", image -> new BitwiseFilter(image).xor(image));
+
+		add("BlendingFilter.blend(BufferedImage,double)", "level=30",
+				image -> new BlendingFilter(image).blend(image, 30));
+
+		add("ChannelFilter.red()", "", image -> new ChannelFilter(image).red());
+		add("ChannelFilter.green()", "", image -> new ChannelFilter(image).green());
+		add("ChannelFilter.blue()", "", image -> new ChannelFilter(image).blue());
+
+		// box kernels factor, random ones take the 2-D loop or, from 13 x 13, the FFT
+		for (final int size : new int[] { 3, 5, 9, 15 }) {
+			final int[][] box = kernel(size, false);
+			final int[][] random = kernel(size, true);
+			add("ConvolutionFilter.convolution(int[][],float)", "kernel=box" + size, "separable kernels", BUDGET,
+					image -> new ConvolutionFilter(image).convolution(box, size * size));
+			add("ConvolutionFilter.convolution(int[][],float)", "kernel=random" + size, "kernels", BUDGET,
+					image -> new ConvolutionFilter(image).convolution(random, size * size));
+			add("ConvolutionFilter.convolution(int[][],float)", "kernel=random" + size + " method=DIRECT",
+					"direct kernels", BUDGET, image -> {
+						final ConvolutionFilter filter = new ConvolutionFilter(image);
+						filter.setMethod(ConvolutionFilter.DIRECT);
+						return filter.convolution(random, size * size);
+					});
+			add("ConvolutionFilter.convolution(int[][],float)", "kernel=random" + size + " method=FFT", "FFT kernels",
+					BUDGET, image -> {
+						final ConvolutionFilter filter = new ConvolutionFilter(image);
+						filter.setMethod(ConvolutionFilter.FFT);
+						return filter.convolution(random, size * size);
+					});
+			add("ConvolutionFilter.convolution(int[][],float)", "kernel=random" + size + " tolerance=0.5",
+					"approximated kernels", BUDGET, image -> {
+						final ConvolutionFilter filter = new ConvolutionFilter(image);
+						filter.setTolerance(0.5);
+						return filter.convolution(random, size * size);
+					});
+		}
+		add("ConvolutionFilter.roberts()", "", image -> new ConvolutionFilter(image).roberts());
+		add("ConvolutionFilter.sobel()", "", image -> new ConvolutionFilter(image).sobel());
+
+		add("GeometricFilter.translate(int,int)", "x=13,y=-7", image -> new GeometricFilter(image).translate(13, -7));
+		add("GeometricFilter.rotate(double)", "angle=15",
+				image -> new GeometricFilter(image).rotate(Math.toRadians(15)));
+		add("GeometricFilter.rotate(double)", "angle=15 BICUBIC expand", image -> {
+			final GeometricFilter filter = new GeometricFilter(image);
+			filter.setInterpolation(GeometricFilter.BICUBIC);
+			filter.setExpand(true);
+			return filter.rotate(Math.toRadians(15));
+		});
+		for (final double scale : new double[] { 0.25, 1.5 }) {
+			add("GeometricFilter.scale(double)", "scale=" + scale, image -> new GeometricFilter(image).scale(scale));
+			add("GeometricFilter.scale(double)", "scale=" + scale + " LANCZOS", image -> {
+				final GeometricFilter filter = new GeometricFilter(image);
+				filter.setResampling(GeometricFilter.LANCZOS);
+				return filter.scale(scale);
+			});
+		}
+		add("GeometricFilter.rotate90()", "", image -> new GeometricFilter(image).rotate90());
+		add("GeometricFilter.rotate180()", "", image -> new GeometricFilter(image).rotate180());
+		add("GeometricFilter.rotate270()", "", image -> new GeometricFilter(image).rotate270());
+		add("GeometricFilter.flipHorizontal()", "", image -> new GeometricFilter(image).flipHorizontal());
+		add("GeometricFilter.flipVertical()", "", image -> new GeometricFilter(image).flipVertical());
+
+		add("GrayscaleFilter.average()", "", image -> new GrayscaleFilter(image).average());
+		add("GrayscaleFilter.sdtv()", "", image -> new GrayscaleFilter(image).sdtv());
+		add("GrayscaleFilter.hdtv()", "", image -> new GrayscaleFilter(image).hdtv());
+		add("GrayscaleFilter.threshold(int)", "max=100", image -> new GrayscaleFilter(image).threshold(100));
+		add("GrayscaleFilter.threshold(int,int)", "min=50,max=150",
+				image -> new GrayscaleFilter(image).threshold(50, 150));
+		add("GrayscaleFilter.histogram()", "", image -> new GrayscaleFilter(image).histogram());
+		add("GrayscaleFilter.histogram(int,int,int,int)", "w=128,h=128",
+				image -> new GrayscaleFilter(image).histogram(64, 64, 128, 128));
+
+		// sorting networks up to 2, histograms from 3
+		for (final int k : new int[] { 1, 2, 3, 5, 10 }) {
+			add("MedianFilter.median(int)", "k=" + k, "median radii", BUDGET,
+					image -> new MedianFilter(image).median(k));
+		}
+
+		final PointPipeline chain = new PointPipeline().hdtv().add(20).threshold(128).not();
+		add("PointPipeline.apply(BufferedImage)", "hdtv>add>threshold>not", image -> chain.apply(image));
+		add("GeometricPipeline.apply()", "translate>rotate>scale>flip", image -> new GeometricPipeline(image)
+				.translate(13, -7).rotate(Math.toRadians(15)).scale(0.75).flipVertical().apply());
+
+		add("SearchFilter.findPattern(BufferedImage)", "pattern=64", null, SEARCH,
+				image -> new SearchFilter(image).findPattern(pattern(image, 64)));
+		add("SearchFilter.findPattern(BufferedImage)", "pattern=64 levels=3", null, SEARCH, image -> {
+			final SearchFilter filter = new SearchFilter(image);
+			filter.setLevels(3);
+			return filter.findPattern(pattern(image, 64));
+		});
+		add("SearchFilter.findPattern(BufferedImage)", "pattern=64 method=CORRELATION", null, CORRELATION, image -> {
+			final SearchFilter filter = new SearchFilter(image);
+			filter.setMethod(SearchFilter.CORRELATION);
+			return filter.findPattern(pattern(image, 64));
+		});
+		add("SearchFilter.findPatterns(BufferedImage,int)", "pattern=64 count=8", null, SEARCH,
+				image -> new SearchFilter(image).findPatterns(pattern(image, 64), 8));
+		add("SearchFilter.drawRegions(List)", "regions=8", image -> {
+			final List<SearchFilter.Region> regions = new ArrayList<>();
+			for (int n = 0; n < 8; n++) {
+				regions.add(new SearchFilter.Region(n * image.getWidth() / 8, n * image.getHeight() / 8, 64, 64, 1));
+			}
+			return new SearchFilter(image).drawRegions(regions);
+		});
+	}
+
+	private static void add(String method, String params, Function<BufferedImage, Object> operation) {
+		add(method, params, null, BUDGET, operation);
+	}
+
+	private static void add(String method, String params, String series, int budget,
+			Function<BufferedImage, Object> operation) {
+		CASES.add(new Case(method, params, series, budget, operation));
+	}
+
+	// public filter methods that have no case, as FilterBenchmark checks its own
+	private static Set<String> uncovered() {
+		final Set<String> methods = new LinkedHashSet<>();
+		for (Class<?> filter : FILTERS) {
+			for (Method method : filter.getDeclaredMethods()) {
+				if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+					continue;
+				}
+				if (method.getName().startsWith("get") || method.getName().startsWith("set")
+						|| method.getName().startsWith("is")) {
+					continue;
+				}
+
+				final StringBuilder sb = new StringBuilder(filter.getSimpleName()).append('.')
+						.append(method.getName()).append('(');
+				final Class<?>[] params = method.getParameterTypes();
+				for (int i = 0; i < params.length; i++) {
+					sb.append(i > 0 ? "," : "").append(params[i].getSimpleName());
+				}
+				methods.add(sb.append(')').toString());
+			}
+		}
+
+		for (Case c : CASES) {
+			methods.remove(c.method);
+		}
+
+		return methods;
+	}
+
+	// bytes allocated so far by every live thread, including the filter worker threads
+	private static long allocatedBytes() {
+		long sum = 0;
+		for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+			if (bytes > 0) {
+				sum += bytes;
+			}
+		}
+
+		return sum;
+	}
+
+	private static BufferedImage pattern(final BufferedImage image, final int size) {
+		return image.getSubimage(image.getWidth() / 3, image.getHeight() / 3, size, size);
+	}
+
+	private static int[][] kernel(final int size, final boolean random) {
+		final Random r = new Random(size);
+		final int[][] kernel = new int[size][size];
+		for (int[] row : kernel) {
+			for (int i = 0; i < size; i++) {
+				row[i] = random ? r.nextInt(9) - 2 : 1;
+			}
+		}
+
+		return kernel;
+	}
+
+	// a gradient with some noise, so that the search has a best match
+	private static BufferedImage image(final int width, final int height, final long seed) {
+		final Random random = new Random(seed);
+		final int[] data = new int[width * height];
+		for (int j = 0, p = 0; j < height; j++) {
+			for (int i = 0; i < width; i++, p++) {
+				final int r = (i * 255 / width + random.nextInt(16)) & 0xFF;
+				final int g = (j * 255 / height + random.nextInt(16)) & 0xFF;
+				final int b = ((i + j) & 0xFF) ^ random.nextInt(8);
+				data[p] = BaseFilter.colorRGB(r, g, b);
+			}
+		}
+
+		return BaseFilter.createImage(data, width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+}
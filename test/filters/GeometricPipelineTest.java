@@ -0,0 +1,100 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.function.Function;
+
+// Every single step of a GeometricPipeline against the GeometricFilter method of the same name, with the
+// nearest neighbour, upscales and downscales included: the size and the pixels must be the same.
+//
+// usage: java -cp bin filters.GeometricPipelineTest
+public class GeometricPipelineTest {
+
+	private static final int[][] SIZES = { { 8, 4 }, { 10, 7 }, { 13, 9 } };
+
+	private static final double[] SCALES = { 0.5, 0.3, 0.25, 0.75, 1.5, 2, 3 };
+
+	private static final double[] ANGLES = { 0.3, -1, Math.PI / 2, Math.PI };
+
+	private static int failures = 0;
+
+	public static void main(String[] args) {
+		for (final int[] size : SIZES) {
+			final BufferedImage image = image(size[0], size[1], size[0]);
+			final String name = size[0] + "x" + size[1] + " ";
+
+			check(name + "translate 3,-2", new GeometricPipeline(image).translate(3, -2),
+					filter -> filter.translate(3, -2), image);
+
+			for (final double scale : SCALES) {
+				check(name + "scale " + scale, new GeometricPipeline(image).scale(scale),
+						filter -> filter.scale(scale), image);
+			}
+
+			for (final double angle : ANGLES) {
+				check(name + "rotate " + angle, new GeometricPipeline(image).rotate(angle),
+						filter -> filter.rotate(angle), image);
+
+				final GeometricPipeline expanded = new GeometricPipeline(image);
+				expanded.setExpand(true);
+				check(name + "rotate " + angle + " expand", expanded.rotate(angle), filter -> {
+					filter.setExpand(true);
+					return filter.rotate(angle);
+				}, image);
+			}
+
+			check(name + "rotate90", new GeometricPipeline(image).rotate90(), GeometricFilter::rotate90, image);
+			check(name + "rotate180", new GeometricPipeline(image).rotate180(), GeometricFilter::rotate180, image);
+			check(name + "rotate270", new GeometricPipeline(image).rotate270(), GeometricFilter::rotate270, image);
+			check(name + "flipHorizontal", new GeometricPipeline(image).flipHorizontal(),
+					GeometricFilter::flipHorizontal, image);
+			check(name + "flipVertical", new GeometricPipeline(image).flipVertical(), GeometricFilter::flipVertical,
+					image);
+		}
+
+		if (failures > 0) {
+			System.out.println(failures + " failed");
+			System.exit(1);
+		}
+		System.out.println("ok");
+	}
+
+	private static void check(final String name, final GeometricPipeline pipeline,
+			final Function<GeometricFilter, BufferedImage> step, final BufferedImage image) {
+		final BufferedImage actual = pipeline.apply();
+		final BufferedImage expected = step.apply(new GeometricFilter(image));
+
+		final boolean same = same(actual, expected);
+		if (!same) {
+			failures++;
+		}
+		System.out.println((same ? "ok     " : "FAILED ") + name);
+	}
+
+	private static boolean same(final BufferedImage actual, final BufferedImage expected) {
+		if (actual.getWidth() != expected.getWidth() || actual.getHeight() != expected.getHeight()) {
+			return false;
+		}
+
+		final int[] a = BaseFilter.getPixels(actual);
+		final int[] e = BaseFilter.getPixels(expected);
+		for (int p = 0; p < a.length; p++) {
+			if (a[p] != e[p]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static BufferedImage image(final int width, final int height, final long seed) {
+		final Random random = new Random(seed);
+		final int[] data = new int[width * height];
+		for (int p = 0; p < data.length; p++) {
+			data[p] = 0xFF000000 | random.nextInt();
+		}
+
+		return BaseFilter.createImage(data, width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+}
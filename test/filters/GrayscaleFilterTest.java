@@ -0,0 +1,82 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+// GrayscaleFilter.threshold against the gray level hdtv() leaves in an image of the source type, read
+// back pixel by pixel, on exact types and on the ones that quantize what is written to them: the pixels
+// must be the same.
+//
+// usage: java -cp bin filters.GrayscaleFilterTest
+public class GrayscaleFilterTest {
+
+	private static final int[] TYPES = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_565_RGB,
+			BufferedImage.TYPE_USHORT_555_RGB, BufferedImage.TYPE_USHORT_GRAY, BufferedImage.TYPE_BYTE_INDEXED };
+
+	private static final String[] TYPE_NAMES = { "INT_RGB", "INT_ARGB", "3BYTE_BGR", "BYTE_GRAY", "USHORT_565_RGB",
+			"USHORT_555_RGB", "USHORT_GRAY", "BYTE_INDEXED" };
+
+	private static final int[][] RANGES = { { 0, 127 }, { 64, 200 }, { 100, 101 }, { 0, 255 } };
+
+	private static int failures = 0;
+
+	public static void main(String[] args) {
+		for (int t = 0; t < TYPES.length; t++) {
+			final BufferedImage image = image(97, 61, TYPES[t], t);
+
+			for (final int[] range : RANGES) {
+				check(TYPE_NAMES[t] + " threshold " + range[0] + "-" + range[1],
+						new GrayscaleFilter(image).threshold(range[0], range[1]), expected(image, range[0], range[1]));
+			}
+		}
+
+		if (failures > 0) {
+			System.out.println(failures + " failed");
+			System.exit(1);
+		}
+		System.out.println("ok");
+	}
+
+	// the gray image in the source type, its blue channel compared to the range
+	private static int[] expected(final BufferedImage image, final int min, final int max) {
+		final BufferedImage gray = new GrayscaleFilter(image).hdtv();
+		final BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+
+		for (int j = 0; j < image.getHeight(); j++) {
+			for (int i = 0; i < image.getWidth(); i++) {
+				final int px = gray.getRGB(i, j) & 0xFF;
+				result.setRGB(i, j, (px >= min && px <= max) ? 0xFF000000 : 0xFFFFFFFF);
+			}
+		}
+
+		return BaseFilter.getPixels(result);
+	}
+
+	private static BufferedImage image(final int width, final int height, final int type, final long seed) {
+		final Random random = new Random(seed);
+		final int[] data = new int[width * height];
+		for (int p = 0; p < data.length; p++) {
+			data[p] = 0xFF000000 | random.nextInt();
+		}
+
+		return BaseFilter.createImage(data, width, height, type);
+	}
+
+	private static void check(final String name, final BufferedImage actual, final int[] expected) {
+		final int[] a = BaseFilter.getPixels(actual);
+
+		int differ = 0;
+		for (int p = 0; p < a.length; p++) {
+			if (a[p] != expected[p]) {
+				differ++;
+			}
+		}
+
+		if (differ > 0) {
+			failures++;
+		}
+		System.out.println((differ == 0 ? "ok     " : "FAILED ") + name + (differ == 0 ? "" : " " + differ + " pixels"));
+	}
+
+}
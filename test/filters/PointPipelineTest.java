@@ -0,0 +1,146 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+// A fused PointPipeline against the same filters applied one after another, on every image type the
+// editor opens, gray included: the pixels must be the same.
+//
+// usage: java -cp bin filters.PointPipelineTest
+public class PointPipelineTest {
+
+	private static final int[] TYPES = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY };
+
+	private static final String[] TYPE_NAMES = { "INT_RGB", "INT_ARGB", "3BYTE_BGR", "4BYTE_ABGR", "BYTE_GRAY" };
+
+	private static int failures = 0;
+
+	public static void main(String[] args) {
+		for (int t = 0; t < TYPES.length; t++) {
+			final BufferedImage image = image(40, 30, TYPES[t], t);
+
+			check(TYPE_NAMES[t] + " add 20 > not", new PointPipeline().add(20).not().apply(image),
+					new BitwiseFilter(new ArithmeticFilter(image).add(20)).not());
+
+			final Random random = new Random(t);
+			int same = 0;
+			for (int n = 0; n < 200; n++) {
+				final PointPipeline chain = new PointPipeline();
+				BufferedImage expected = image;
+
+				for (int s = 1 + random.nextInt(6); s > 0; s--) {
+					final UnaryOperator<BufferedImage> filter = step(chain, random);
+					expected = filter.apply(expected);
+				}
+
+				// as the editor applies a recorded chain, through a copy
+				if (same(new PointPipeline().then(chain).apply(image), expected)) {
+					same++;
+				} else {
+					System.out.println("FAILED " + TYPE_NAMES[t] + " " + chain);
+				}
+			}
+
+			if (same < 200) {
+				failures++;
+			}
+			System.out.println((same == 200 ? "ok     " : "FAILED ") + TYPE_NAMES[t] + " random chains " + same + "/200");
+		}
+
+		if (failures > 0) {
+			System.out.println(failures + " failed");
+			System.exit(1);
+		}
+		System.out.println("ok");
+	}
+
+	// adds a random step to the chain and returns the filter it stands for
+	private static UnaryOperator<BufferedImage> step(final PointPipeline chain, final Random random) {
+		final int k = random.nextInt(256);
+		final double d = 0.5 + random.nextInt(30) / 10.0;
+
+		switch (random.nextInt(14)) {
+		case 0:
+			chain.add(k);
+			return image -> new ArithmeticFilter(image).add(k);
+		case 1:
+			chain.sub(k);
+			return image -> new ArithmeticFilter(image).sub(k);
+		case 2:
+			chain.mul(d);
+			return image -> new ArithmeticFilter(image).mul(d);
+		case 3:
+			chain.div(d);
+			return image -> new ArithmeticFilter(image).div(d);
+		case 4:
+			chain.and(k);
+			return image -> new BitwiseFilter(image).and(k);
+		case 5:
+			chain.or(k);
+			return image -> new BitwiseFilter(image).or(k);
+		case 6:
+			chain.xor(k);
+			return image -> new BitwiseFilter(image).xor(k);
+		case 7:
+			chain.not();
+			return image -> new BitwiseFilter(image).not();
+		case 8:
+			chain.red();
+			return image -> new ChannelFilter(image).red();
+		case 9:
+			chain.green();
+			return image -> new ChannelFilter(image).green();
+		case 10:
+			chain.blue();
+			return image -> new ChannelFilter(image).blue();
+		case 11:
+			chain.average();
+			return image -> new GrayscaleFilter(image).average();
+		case 12:
+			chain.sdtv();
+			return image -> new GrayscaleFilter(image).sdtv();
+		default:
+			final int min = random.nextInt(128), max = min + random.nextInt(128);
+			chain.threshold(min, max);
+			return image -> new GrayscaleFilter(image).threshold(min, max);
+		}
+	}
+
+	private static BufferedImage image(final int width, final int height, final int type, final long seed) {
+		final Random random = new Random(seed);
+		final int[] data = new int[width * height];
+		for (int p = 0; p < data.length; p++) {
+			data[p] = type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_4BYTE_ABGR
+					? random.nextInt() : 0xFF000000 | random.nextInt();
+		}
+
+		return BaseFilter.createImage(data, width, height, type);
+	}
+
+	private static boolean same(final BufferedImage actual, final BufferedImage expected) {
+		if (actual.getWidth() != expected.getWidth() || actual.getHeight() != expected.getHeight()) {
+			return false;
+		}
+
+		final int[] a = BaseFilter.getPixels(actual);
+		final int[] e = BaseFilter.getPixels(expected);
+		for (int p = 0; p < a.length; p++) {
+			if (a[p] != e[p]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static void check(final String name, final BufferedImage actual, final BufferedImage expected) {
+		final boolean same = same(actual, expected);
+		if (!same) {
+			failures++;
+		}
+		System.out.println((same ? "ok     " : "FAILED ") + name);
+	}
+
+}
@@ -0,0 +1,114 @@
+package gui;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import filters.ConvolutionFilter;
+import filters.GeometricPipeline;
+import filters.PointPipeline;
+
+// Undo and redo through the states of an ImageHistory that no operation can make again: an image opened
+// or set directly and the result of geometric steps. Every state must come back with the pixels it had.
+//
+// usage: java -cp bin gui.ImageHistoryTest
+public class ImageHistoryTest {
+
+    private static final int[][] BLUR = { { 1, 2, 1 }, { 2, 4, 2 }, { 1, 2, 1 } };
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        undoAcrossTransform();
+        undoAcrossImage();
+        undoInvertibleAcrossImage();
+
+        if (failures > 0) {
+            System.out.println(failures + " failed");
+            System.exit(1);
+        }
+        System.out.println("ok");
+    }
+
+    // open, blur, rotate 15 degrees, undo
+    private static void undoAcrossTransform() {
+        BufferedImage opened = image(1);
+        Operation blur = blur();
+        BufferedImage blurred = blur.apply(opened);
+        GeometricPipeline transform = new GeometricPipeline(blurred).rotate(Math.toRadians(15));
+        BufferedImage rotated = transform.apply();
+
+        ImageHistory history = new ImageHistory();
+        history.add(opened, null, null, 0);
+        history.add(blurred, blur, null, 0);
+        history.add(rotated, null, transform, 0);
+
+        check("undo across a transform", history.get(1), blurred);
+        check("redo across a transform", history.get(2), rotated);
+        check("undo to the opened image", history.get(0), opened);
+        history.clear();
+    }
+
+    // open, blur, set an image, undo
+    private static void undoAcrossImage() {
+        BufferedImage opened = image(2);
+        Operation blur = blur();
+        BufferedImage blurred = blur.apply(opened);
+        BufferedImage set = image(3);
+
+        ImageHistory history = new ImageHistory();
+        history.add(opened, null, null, 0);
+        history.add(blurred, blur, null, 0);
+        history.add(set, null, null, 0);
+
+        check("undo across an image", history.get(1), blurred);
+        check("redo across an image", history.get(2), set);
+        history.clear();
+    }
+
+    // the state after is not made by an operation, so the inverses before it cannot be used either
+    private static void undoInvertibleAcrossImage() {
+        BufferedImage opened = image(4);
+        PointPipeline not = new PointPipeline().not();
+        Operation invert = new Operation("not", not::apply, not::apply);
+        BufferedImage inverted = invert.apply(opened);
+        BufferedImage set = image(5);
+
+        ImageHistory history = new ImageHistory();
+        history.add(opened, null, null, 0);
+        history.add(inverted, invert, null, 0);
+        history.add(set, null, null, 0);
+
+        check("undo invertible across an image", history.get(1), inverted);
+        history.clear();
+    }
+
+    private static Operation blur() {
+        return new Operation("blur", image -> new ConvolutionFilter(image).convolution(BLUR, 16));
+    }
+
+    private static BufferedImage image(long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(97, 61, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static void check(String name, BufferedImage actual, BufferedImage expected) {
+        boolean same = actual.getWidth() == expected.getWidth() && actual.getHeight() == expected.getHeight();
+        for (int y = 0; same && y < actual.getHeight(); y++) {
+            for (int x = 0; same && x < actual.getWidth(); x++) {
+                same = actual.getRGB(x, y) == expected.getRGB(x, y);
+            }
+        }
+
+        if (!same) {
+            failures++;
+        }
+        System.out.println((same ? "ok     " : "FAILED ") + name);
+    }
+
+}